@@ -0,0 +1,86 @@
+package com.example.autoprivacyshield;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of mutable bitmaps keyed by width, height and config.
+ *
+ * Ownership is explicit: whoever {@link #acquire}s a bitmap owns it until it is
+ * handed on or {@link #release}d. Pooled bitmaps keep their previous pixels, so
+ * callers must overwrite the whole bitmap before reading it.
+ */
+public class BitmapPool {
+    private static final String TAG = "BitmapPool";
+
+    private final int maxPerKey;
+    private final Map<Long, ArrayDeque<Bitmap>> free = new HashMap<>();
+    private boolean closed;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BitmapPool(int maxPerKey) {
+        this.maxPerKey = maxPerKey;
+    }
+
+    public synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        ArrayDeque<Bitmap> bucket = free.get(key(width, height, config));
+        Bitmap bitmap = bucket != null ? bucket.pollFirst() : null;
+        if (bitmap != null) {
+            hits++;
+            return bitmap;
+        }
+        misses++;
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /** Returns a bitmap to the pool; it must not be used by the caller afterwards. */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+
+        Bitmap.Config config = bitmap.getConfig();
+        if (closed || config == null || !bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+
+        long key = key(bitmap.getWidth(), bitmap.getHeight(), config);
+        ArrayDeque<Bitmap> bucket = free.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>(maxPerKey);
+            free.put(key, bucket);
+        }
+        if (bucket.size() >= maxPerKey) {
+            evictions++;
+            bitmap.recycle();
+        } else {
+            bucket.addFirst(bitmap);
+        }
+    }
+
+    /** Recycles every pooled bitmap; later releases recycle immediately. */
+    public synchronized void close() {
+        closed = true;
+        for (ArrayDeque<Bitmap> bucket : free.values()) {
+            for (Bitmap bitmap : bucket) {
+                bitmap.recycle();
+            }
+        }
+        free.clear();
+        Log.d(TAG, "Bitmap pool closed - " + describeStats());
+    }
+
+    public synchronized String describeStats() {
+        return "hits=" + hits + " misses=" + misses + " evictions=" + evictions;
+    }
+
+    private static long key(int width, int height, Bitmap.Config config) {
+        return ((long) width << 32) | ((long) height << 8) | config.ordinal();
+    }
+}
@@ -1,13 +1,42 @@
 package com.example.autoprivacyshield;
 
+import android.content.ContentResolver;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ImageDecoder;
+import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
 import android.text.TextPaint;
+import android.util.Size;
+
+import java.io.IOException;
+import java.io.InputStream;
 
 public class BitmapUtils {
 
+    // Replaces destination pixels instead of blending, so pooled bitmaps need no clearing first
+    private static final Paint COPY_PAINT = new Paint();
+
+    static {
+        COPY_PAINT.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
+    /**
+     * Copies {@code src} into the top-left corner of {@code dst}, replacing its pixels.
+     * Anything of {@code src} beyond {@code dst}'s bounds is cropped.
+     */
+    public static void copyInto(Bitmap src, Bitmap dst) {
+        Canvas canvas = new Canvas(dst);
+        canvas.drawBitmap(src, 0, 0, COPY_PAINT);
+    }
+
     /**
      * Converts a plain text string into a bitmap for OCR processing.
      * @param text The text to render into a bitmap
@@ -39,4 +68,81 @@ public class BitmapUtils {
 
         return bitmap;
     }
+
+    /**
+     * Decodes an image scaled down so its longer side is about {@code maxSide}, without
+     * allocating the full-resolution bitmap. On API 28+ ImageDecoder scales to exactly
+     * {@code maxSide}; older devices subsample by a power of two, keeping the longer side
+     * between {@code maxSide} and twice that. Either way the EXIF rotation is applied.
+     * Small images are decoded as they are. Returns a software ARGB_8888 bitmap, or null if
+     * the image cannot be decoded.
+     */
+    public static Bitmap decodeScaled(ContentResolver resolver, Uri uri, int maxSide) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return ImageDecoder.decodeBitmap(ImageDecoder.createSource(resolver, uri), (decoder, info, source) -> {
+                Size size = info.getSize();
+                int longer = Math.max(size.getWidth(), size.getHeight());
+                if (longer > maxSide) {
+                    float scale = maxSide / (float) longer;
+                    decoder.setTargetSize(Math.max(1, Math.round(size.getWidth() * scale)),
+                            Math.max(1, Math.round(size.getHeight() * scale)));
+                }
+                // Hardware bitmaps cannot be cropped or read back by the detectors
+                decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+            });
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int longer = Math.max(options.outWidth, options.outHeight);
+        int sampleSize = 1;
+        while (longer / (sampleSize * 2) >= maxSide) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap decoded;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+
+        int rotation = exifRotation(resolver, uri);
+        if (decoded == null || rotation == 0) return decoded;
+        Matrix matrix = new Matrix();
+        matrix.setRotate(rotation);
+        Bitmap rotated = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+        if (rotated != decoded) decoded.recycle();
+        return rotated;
+    }
+
+    /**
+     * Clockwise rotation, in degrees, that turns the stored pixels upright according to
+     * the image's EXIF orientation. Mirrored orientations and images without EXIF data
+     * give 0.
+     */
+    public static int exifRotation(ContentResolver resolver, Uri uri) {
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) return 0;
+            int orientation = new ExifInterface(in).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package com.example.autoprivacyshield;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.os.SystemClock;
+
+import com.google.mediapipe.framework.image.BitmapImageBuilder;
+import com.google.mediapipe.framework.image.MPImage;
+import com.google.mediapipe.tasks.components.containers.Detection;
+import com.google.mediapipe.tasks.vision.facedetector.FaceDetector;
+import com.google.mediapipe.tasks.vision.facedetector.FaceDetectorResult;
+
+import java.util.concurrent.Executor;
+
+/**
+ * MediaPipe BlazeFace short-range detector in video mode. Inference takes a few
+ * milliseconds, so it runs on the calling thread, which still owns the bitmap; only the
+ * completion is posted to the result executor.
+ *
+ * The detector is shared through the registry and video mode needs strictly increasing
+ * timestamps, so every call is serialised on the detector.
+ */
+public class BlazeFaceBackend implements FaceDetectorBackend {
+    // Guarded by the detector's lock; shared by every backend instance
+    private static long lastTimestampMs;
+
+    private final ModelRegistry.Handle<FaceDetector> model;
+
+    public BlazeFaceBackend(Context context) {
+        model = ModelRegistry.acquireBlazeFace(context);
+    }
+
+    @Override
+    public String getName() {
+        return BLAZEFACE;
+    }
+
+    @Override
+    public void detect(Bitmap bitmap, DetectionBuffer out, Executor resultExecutor, Callback callback) {
+        FaceDetector detector = model.get();
+        Exception error = null;
+        if (detector != null) {
+            try (MPImage image = new BitmapImageBuilder(bitmap).build()) {
+                FaceDetectorResult result;
+                synchronized (detector) {
+                    lastTimestampMs = Math.max(lastTimestampMs + 1, SystemClock.uptimeMillis());
+                    result = detector.detectForVideo(image, lastTimestampMs);
+                }
+                addFaces(result, bitmap.getWidth(), bitmap.getHeight(), out);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+
+        Exception failure = error;
+        resultExecutor.execute(() -> callback.onComplete(failure));
+    }
+
+    private static void addFaces(FaceDetectorResult result, int width, int height, DetectionBuffer out) {
+        for (Detection detection : result.detections()) {
+            RectF box = detection.boundingBox();
+            int left = Math.max(0, Math.round(box.left));
+            int top = Math.max(0, Math.round(box.top));
+            int right = Math.min(width, Math.round(box.right));
+            int bottom = Math.min(height, Math.round(box.bottom));
+            if (right > left && bottom > top) {
+                out.add(left, top, right, bottom, DetectionBuffer.TYPE_FACE,
+                        DetectionBuffer.FLAG_SENSITIVE, MlKitFaceBackend.FACE_TEXT);
+            }
+        }
+    }
+
+    @Override
+    public boolean isLoading() {
+        return model.isLoading();
+    }
+
+    @Override
+    public boolean awaitReady(long timeoutMs) {
+        return model.await(timeoutMs) != null;
+    }
+
+    @Override
+    public void close() {
+        model.close();
+    }
+}
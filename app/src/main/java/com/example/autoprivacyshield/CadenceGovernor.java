@@ -0,0 +1,114 @@
+package com.example.autoprivacyshield;
+
+import android.os.PowerManager;
+
+/**
+ * Decides which captured frames enter the detection pipeline.
+ *
+ * While the screen changes, frames are let through about as often as detection can finish
+ * them (smoothed latency, or the minimum interval while the pipeline is idle). A static
+ * screen drops to a low heartbeat. Thermal throttling stretches both intervals.
+ *
+ * Time, latency and queue depth come from the {@link FrameScheduler.Clock} and
+ * {@link LatencySource} given to the constructor, so the policy runs without a device.
+ * Not thread-safe apart from {@link #setThermalStatus}; call it from the capture thread.
+ */
+public class CadenceGovernor {
+
+    public interface LatencySource {
+        /** Processing time of the most recently completed frame. */
+        long getLastLatencyMs();
+
+        /** Frames in flight plus frames waiting for a slot. */
+        int getQueueDepth();
+    }
+
+    static final long MIN_INTERVAL_MS = 33;
+    static final long MAX_INTERVAL_MS = 1000;
+    static final long HEARTBEAT_MS = 2000;
+    // Weight of a new latency sample in the moving average
+    private static final float LATENCY_SMOOTHING = 0.25f;
+
+    private final FrameScheduler.Clock clock;
+    private final LatencySource latencySource;
+
+    private volatile int thermalStatus = PowerManager.THERMAL_STATUS_NONE;
+    private float smoothedLatencyMs;
+    private long lastAcceptedAtMs = Long.MIN_VALUE / 2;
+
+    // ===== Counters =====
+    private long accepted;
+    private long throttled;
+    private long heartbeats;
+
+    public CadenceGovernor(LatencySource latencySource) {
+        this(latencySource, FrameScheduler.UPTIME_CLOCK);
+    }
+
+    public CadenceGovernor(LatencySource latencySource, FrameScheduler.Clock clock) {
+        this.latencySource = latencySource;
+        this.clock = clock;
+    }
+
+    /**
+     * @param contentChanged false if the frame matches the last one that was let through
+     * @return true if the frame should be converted and submitted
+     */
+    public boolean shouldProcess(boolean contentChanged) {
+        long now = clock.nowMillis();
+        long elapsed = now - lastAcceptedAtMs;
+
+        long required = contentChanged ? currentIntervalMs() : HEARTBEAT_MS * thermalFactor();
+        if (elapsed < required) {
+            if (contentChanged) throttled++;
+            return false;
+        }
+
+        if (!contentChanged) heartbeats++;
+        accepted++;
+        lastAcceptedAtMs = now;
+        sampleLatency();
+        return true;
+    }
+
+    /** PowerManager thermal status; may be called from any thread. */
+    public void setThermalStatus(int status) {
+        thermalStatus = status;
+    }
+
+    /** Interval between changed frames right now. */
+    public long currentIntervalMs() {
+        long interval = latencySource.getQueueDepth() == 0
+                ? MIN_INTERVAL_MS
+                : Math.max(MIN_INTERVAL_MS, (long) smoothedLatencyMs);
+        return Math.min(MAX_INTERVAL_MS, interval * thermalFactor());
+    }
+
+    /** Time until a changed frame would be let through; 0 if it would be now. */
+    public long timeUntilNextChangeMs() {
+        return Math.max(0, currentIntervalMs() - (clock.nowMillis() - lastAcceptedAtMs));
+    }
+
+    public String describeStats() {
+        return "accepted=" + accepted
+                + " throttled=" + throttled
+                + " heartbeats=" + heartbeats
+                + " latencyMs=" + (long) smoothedLatencyMs
+                + " intervalMs=" + currentIntervalMs()
+                + " thermal=" + thermalStatus;
+    }
+
+    private void sampleLatency() {
+        long latency = latencySource.getLastLatencyMs();
+        smoothedLatencyMs = smoothedLatencyMs == 0
+                ? latency
+                : smoothedLatencyMs + LATENCY_SMOOTHING * (latency - smoothedLatencyMs);
+    }
+
+    private int thermalFactor() {
+        int status = thermalStatus;
+        if (status >= PowerManager.THERMAL_STATUS_SEVERE) return 4;
+        if (status >= PowerManager.THERMAL_STATUS_MODERATE) return 2;
+        return 1;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.autoprivacyshield;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Detection results as parallel primitive arrays (box coordinates, type code, flags) plus
+ * an optional text reference per entry. Buffers are cleared and refilled instead of
+ * reallocated, so a steady stream of frames allocates nothing once capacity has grown.
+ *
+ * Text is kept as the recogniser's own CharSequence and only trimmed when asked for.
+ * {@link #toDetectResults} adapts a buffer to the {@link DetectResult} API.
+ */
+public class DetectionBuffer {
+    // Type codes; names match the DetectResult type strings
+    public static final int TYPE_TEXT = 0;
+    public static final int TYPE_FACE = 1;
+    public static final int TYPE_AADHAAR = 2;
+    public static final int TYPE_PAN = 3;
+    public static final int TYPE_PHONE = 4;
+    public static final int TYPE_DOB = 5;
+    public static final int TYPE_OTP = 6;
+    public static final int TYPE_PASSWORD = 7;
+    public static final int TYPE_PIN = 8;
+    public static final int TYPE_CODE = 9;
+    public static final int TYPE_OBJECT = 10;  // YOLO class; the label is the entry's text
+    private static final String[] TYPE_NAMES = {
+            "TEXT", "FACE", "AADHAAR", "PAN", "PHONE", "DOB", "OTP", "PASSWORD", "PIN", "CODE", "OBJECT"
+    };
+
+    public static final int FLAG_SENSITIVE = 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] tops = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private int[] bottoms = new int[INITIAL_CAPACITY];
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] flags = new int[INITIAL_CAPACITY];
+    private CharSequence[] texts = new CharSequence[INITIAL_CAPACITY];
+
+    public void clear() {
+        Arrays.fill(texts, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Appends an entry; {@code box} is copied, not kept. */
+    public void add(Rect box, int offsetX, int offsetY, int type, int flags, CharSequence text) {
+        add(box.left + offsetX, box.top + offsetY, box.right + offsetX, box.bottom + offsetY, type, flags, text);
+    }
+
+    public void add(int left, int top, int right, int bottom, int type, int flags, CharSequence text) {
+        if (size == lefts.length) grow();
+        lefts[size] = left;
+        tops[size] = top;
+        rights[size] = right;
+        bottoms[size] = bottom;
+        types[size] = type;
+        this.flags[size] = flags;
+        texts[size] = text;
+        size++;
+    }
+
+    /** Appends entry {@code index} of {@code other}. */
+    public void addFrom(DetectionBuffer other, int index) {
+        add(other.lefts[index], other.tops[index], other.rights[index], other.bottoms[index],
+                other.types[index], other.flags[index], other.texts[index]);
+    }
+
+    public void addAll(DetectionBuffer other) {
+        for (int i = 0; i < other.size; i++) {
+            addFrom(other, i);
+        }
+    }
+
+    // ===== Entry access =====
+
+    public int left(int index) {
+        return lefts[index];
+    }
+
+    public int top(int index) {
+        return tops[index];
+    }
+
+    public int right(int index) {
+        return rights[index];
+    }
+
+    public int bottom(int index) {
+        return bottoms[index];
+    }
+
+    public int type(int index) {
+        return types[index];
+    }
+
+    public String typeName(int index) {
+        return TYPE_NAMES[types[index]];
+    }
+
+    public int flags(int index) {
+        return flags[index];
+    }
+
+    public boolean isSensitive(int index) {
+        return (flags[index] & FLAG_SENSITIVE) != 0;
+    }
+
+    /** Trimmed text of the entry, or null if it has none. */
+    public String text(int index) {
+        CharSequence text = texts[index];
+        return text == null ? null : text.toString().trim();
+    }
+
+    /** Writes the entry's box into {@code out} and returns it. */
+    public Rect copyBoxTo(int index, Rect out) {
+        out.set(lefts[index], tops[index], rights[index], bottoms[index]);
+        return out;
+    }
+
+    public int countSensitive() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (isSensitive(i)) count++;
+        }
+        return count;
+    }
+
+    /** New Rects for the sensitive entries, for callers that keep boxes beyond the buffer's reuse. */
+    public Rect[] sensitiveBoxes() {
+        Rect[] boxes = new Rect[countSensitive()];
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (isSensitive(i)) boxes[next++] = new Rect(lefts[i], tops[i], rights[i], bottoms[i]);
+        }
+        return boxes;
+    }
+
+    // ===== DetectResult adapters =====
+
+    public DetectResult toDetectResult(int index) {
+        return new DetectResult(text(index), isSensitive(index), typeName(index),
+                new Rect(lefts[index], tops[index], rights[index], bottoms[index]));
+    }
+
+    public List<DetectResult> toDetectResults() {
+        List<DetectResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(toDetectResult(i));
+        }
+        return results;
+    }
+
+    private void grow() {
+        int capacity = lefts.length * 2;
+        lefts = Arrays.copyOf(lefts, capacity);
+        tops = Arrays.copyOf(tops, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        bottoms = Arrays.copyOf(bottoms, capacity);
+        types = Arrays.copyOf(types, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+    }
+}
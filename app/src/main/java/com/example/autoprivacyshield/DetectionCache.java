@@ -0,0 +1,402 @@
+package com.example.autoprivacyshield;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache of detection results, so an image that was already checked is not run
+ * through the models again. Entries are keyed by a hash of the decoded pixels combined
+ * with a string naming the detector configuration; changing the configuration string
+ * simply stops old entries from matching, and they age out.
+ *
+ * Records are appended to a data file. A fixed-size open-addressing index, memory-mapped,
+ * maps a key to its record in one or two probes, and keeps a use counter per slot. When
+ * the data file or the index fills up, the least recently used records are dropped and
+ * the rest are rewritten compactly.
+ *
+ * Every record carries its key and a CRC, so a torn write reads as a miss. All methods
+ * do small blocking file I/O; I/O errors disable the cache rather than fail detection.
+ * UI code runs hashing and lookups on {@link #background()} and posts the results back.
+ */
+public final class DetectionCache {
+    private static final String TAG = "DetectionCache";
+    private static final String DIR_NAME = "detection_cache";
+
+    private static final int INDEX_MAGIC = 0x41505349;   // "APSI"
+    private static final int RECORD_MAGIC = 0x41505352;  // "APSR"
+    private static final int VERSION = 1;
+
+    // Index: header, then slots of key, record offset, record length, last use
+    private static final int SLOT_COUNT = 8192;  // Power of two
+    private static final int SLOT_BYTES = 24;
+    private static final int HEADER_BYTES = 32;
+    private static final int HEADER_ENTRIES = 12;
+    private static final int HEADER_CLOCK = 16;
+    private static final int HEADER_DATA_END = 20;
+
+    private static final long MAX_DATA_BYTES = 8L << 20;
+    private static final int MAX_ENTRIES = SLOT_COUNT * 3 / 4;
+    private static final int MAX_RECORD_BYTES = 256 << 10;
+    // Eviction trims to this share of the limits, so it does not run on every put
+    private static final float EVICT_TO = 0.75f;
+
+    private static DetectionCache instance;
+    private static final ExecutorService BACKGROUND =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "APS-cache"));
+
+    /** Cached results and the size of the image their boxes refer to. */
+    public static final class Entry {
+        public final int width;
+        public final int height;
+        public final DetectionBuffer results;
+
+        Entry(int width, int height, DetectionBuffer results) {
+            this.width = width;
+            this.height = height;
+            this.results = results;
+        }
+    }
+
+    private final File dir;
+    private RandomAccessFile dataFile;
+    private FileChannel data;
+    private MappedByteBuffer index;
+    private boolean disabled;
+
+    private DetectionCache(File dir) {
+        this.dir = dir;
+    }
+
+    public static synchronized DetectionCache get(Context context) {
+        if (instance == null) {
+            instance = new DetectionCache(new File(context.getApplicationContext().getCacheDir(), DIR_NAME));
+        }
+        return instance;
+    }
+
+    /** A shared thread for hashing and cache I/O that must not run on the UI thread. */
+    public static Executor background() {
+        return BACKGROUND;
+    }
+
+    // ===== Keys =====
+
+    /** Hash of every pixel of {@code bitmap}, for {@link #key}. */
+    public static long contentHash(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] row = new int[width];
+        long hash = 0xcbf29ce484222325L ^ ((long) width << 32 | height);
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int pixel : row) {
+                hash = (hash ^ pixel) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /** Cache key for an image's {@link #contentHash} under a detector configuration. */
+    public static long key(long contentHash, String config) {
+        long configHash = 0xcbf29ce484222325L;
+        for (int i = 0; i < config.length(); i++) {
+            configHash = (configHash ^ config.charAt(i)) * 0x100000001b3L;
+        }
+        long key = mix(contentHash ^ mix(configHash));
+        return key != 0 ? key : 1;  // 0 marks an empty slot
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    // ===== Lookup and store =====
+
+    /** The entry under {@code key}, or null on a miss. */
+    public synchronized Entry get(long key) {
+        if (!ensureOpen()) return null;
+        int slot = findSlot(key);
+        if (slotKey(slot) != key) return null;
+
+        long offset = index.getLong(slotPosition(slot) + 8);
+        int length = index.getInt(slotPosition(slot) + 16);
+        try {
+            ByteBuffer record = ByteBuffer.allocate(length);
+            while (record.hasRemaining()) {
+                if (data.read(record, offset + record.position()) < 0) return null;
+            }
+            Entry entry = decode(record.array(), key);
+            if (entry != null) {
+                index.putInt(slotPosition(slot) + 20, tick());
+            }
+            return entry;
+        } catch (IOException e) {
+            disable(e);
+            return null;
+        }
+    }
+
+    /** Stores {@code results}, whose boxes refer to a {@code width} x {@code height} image. */
+    public synchronized void put(long key, int width, int height, DetectionBuffer results) {
+        if (!ensureOpen()) return;
+        byte[] record = encode(key, width, height, results);
+        if (record.length > MAX_RECORD_BYTES) return;
+
+        try {
+            int slot = findSlot(key);
+            boolean added = slotKey(slot) == 0;
+            if ((added && entries() >= MAX_ENTRIES) || dataEnd() + record.length > MAX_DATA_BYTES) {
+                evict(record.length);
+                slot = findSlot(key);
+                added = slotKey(slot) == 0;
+            }
+
+            long offset = dataEnd();
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                data.write(buffer, offset + buffer.position());
+            }
+            // A replaced record stays in the data file until the next eviction
+            setSlot(slot, key, offset, record.length, tick());
+            if (added) index.putInt(HEADER_ENTRIES, entries() + 1);
+            index.putLong(HEADER_DATA_END, offset + record.length);
+        } catch (IOException e) {
+            disable(e);
+        }
+    }
+
+    // ===== Index =====
+
+    private int findSlot(long key) {
+        int slot = (int) (key & (SLOT_COUNT - 1));
+        // The index is never full, so there is always an empty slot to stop at
+        while (true) {
+            long found = slotKey(slot);
+            if (found == key || found == 0) return slot;
+            slot = (slot + 1) & (SLOT_COUNT - 1);
+        }
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private long slotKey(int slot) {
+        return index.getLong(slotPosition(slot));
+    }
+
+    private void setSlot(int slot, long key, long offset, int length, int lastUse) {
+        int position = slotPosition(slot);
+        index.putLong(position, key);
+        index.putLong(position + 8, offset);
+        index.putInt(position + 16, length);
+        index.putInt(position + 20, lastUse);
+    }
+
+    private int entries() {
+        return index.getInt(HEADER_ENTRIES);
+    }
+
+    private long dataEnd() {
+        return index.getLong(HEADER_DATA_END);
+    }
+
+    private int tick() {
+        int clock = index.getInt(HEADER_CLOCK) + 1;
+        index.putInt(HEADER_CLOCK, clock);
+        return clock;
+    }
+
+    /**
+     * Keeps the most recently used records that fit in {@link #EVICT_TO} of the limits,
+     * leaving room for {@code incoming} bytes, and rewrites them into a fresh data file.
+     */
+    private void evict(int incoming) throws IOException {
+        List<long[]> live = new ArrayList<>(entries());
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            int position = slotPosition(slot);
+            long key = index.getLong(position);
+            if (key == 0) continue;
+            live.add(new long[]{key, index.getLong(position + 8), index.getInt(position + 16), index.getInt(position + 20)});
+        }
+        Collections.sort(live, (a, b) -> Long.compare(b[3], a[3]));
+
+        long byteBudget = (long) (MAX_DATA_BYTES * EVICT_TO) - incoming;
+        int entryBudget = (int) (MAX_ENTRIES * EVICT_TO);
+        File compacted = new File(dir, "data.tmp");
+        List<long[]> kept = new ArrayList<>();
+        long written = 0;
+        try (RandomAccessFile out = new RandomAccessFile(compacted, "rw")) {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            for (long[] entry : live) {
+                int length = (int) entry[2];
+                if (kept.size() >= entryBudget || written + length > byteBudget) break;
+                long copied = 0;
+                while (copied < length) {
+                    copied += data.transferTo(entry[1] + copied, length - copied, channel);
+                }
+                kept.add(new long[]{entry[0], written, length});
+                written += length;
+            }
+            channel.force(false);
+        }
+
+        closeData();
+        File dataPath = new File(dir, "data.bin");
+        if (!compacted.renameTo(dataPath)) throw new IOException("Cannot replace " + dataPath);
+        openData();
+
+        clearIndex();
+        // Most recent first; renumber the use counter from the top
+        for (int i = 0; i < kept.size(); i++) {
+            long[] entry = kept.get(i);
+            setSlot(findSlot(entry[0]), entry[0], entry[1], (int) entry[2], kept.size() - i);
+        }
+        index.putInt(HEADER_ENTRIES, kept.size());
+        index.putInt(HEADER_CLOCK, kept.size());
+        index.putLong(HEADER_DATA_END, written);
+        index.force();
+        Log.d(TAG, "Evicted " + (live.size() - kept.size()) + " of " + live.size() + " entries, "
+                + written + " bytes kept");
+    }
+
+    // ===== Files =====
+
+    private boolean ensureOpen() {
+        if (disabled) return false;
+        if (index != null) return true;
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+            long indexBytes = HEADER_BYTES + (long) SLOT_COUNT * SLOT_BYTES;
+            try (RandomAccessFile indexFile = new RandomAccessFile(new File(dir, "index.bin"), "rw")) {
+                indexFile.setLength(indexBytes);
+                // The mapping stays valid after the file is closed
+                index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, indexBytes);
+            }
+            openData();
+
+            boolean valid = index.getInt(0) == INDEX_MAGIC && index.getInt(4) == VERSION
+                    && index.getInt(8) == SLOT_COUNT && dataEnd() <= data.size();
+            if (!valid) {
+                clearIndex();
+                index.putInt(0, INDEX_MAGIC);
+                index.putInt(4, VERSION);
+                index.putInt(8, SLOT_COUNT);
+                index.putInt(HEADER_ENTRIES, 0);
+                index.putInt(HEADER_CLOCK, 0);
+                index.putLong(HEADER_DATA_END, 0);
+            }
+            // Drop a record whose write was cut off before the index was updated
+            data.truncate(dataEnd());
+            return true;
+        } catch (IOException e) {
+            disable(e);
+            return false;
+        }
+    }
+
+    private void openData() throws IOException {
+        dataFile = new RandomAccessFile(new File(dir, "data.bin"), "rw");
+        data = dataFile.getChannel();
+    }
+
+    private void closeData() throws IOException {
+        dataFile.close();
+    }
+
+    private void clearIndex() {
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            index.putLong(slotPosition(slot), 0);
+        }
+    }
+
+    private void disable(IOException e) {
+        Log.w(TAG, "Detection cache disabled", e);
+        disabled = true;
+    }
+
+    // ===== Records =====
+
+    /*
+     * Record: magic, key, width, height, entry count, then per entry type, flags, box and
+     * optional text, then a CRC32 of everything before it.
+     */
+    private static byte[] encode(long key, int width, int height, DetectionBuffer results) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + results.size() * 24);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(RECORD_MAGIC);
+            out.writeLong(key);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(results.size());
+            for (int i = 0; i < results.size(); i++) {
+                String text = results.text(i);
+                out.writeByte(results.type(i));
+                out.writeByte(results.flags(i));
+                out.writeInt(results.left(i));
+                out.writeInt(results.top(i));
+                out.writeInt(results.right(i));
+                out.writeInt(results.bottom(i));
+                out.writeBoolean(text != null);
+                if (text != null) out.writeUTF(text.length() > 4096 ? text.substring(0, 4096) : text);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  // In-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] record, long key) {
+        if (record.length < 4) return null;
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length - 4);
+        int stored = ByteBuffer.wrap(record, record.length - 4, 4).getInt();
+        if (stored != (int) crc.getValue()) return null;
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 0, record.length - 4))) {
+            if (in.readInt() != RECORD_MAGIC || in.readLong() != key) return null;
+            int width = in.readInt();
+            int height = in.readInt();
+            int count = in.readInt();
+            DetectionBuffer results = new DetectionBuffer();
+            for (int i = 0; i < count; i++) {
+                int type = in.readByte();
+                int flags = in.readByte();
+                int left = in.readInt();
+                int top = in.readInt();
+                int right = in.readInt();
+                int bottom = in.readInt();
+                String text = in.readBoolean() ? in.readUTF() : null;
+                results.add(left, top, right, bottom, type, flags, text);
+            }
+            return new Entry(width, height, results);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -5,23 +5,18 @@ import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executor;
 
 public class DetectionHandler {
     private static final String TAG = "DetectionHandler";
+    // Extra pixels around every mask so glyph edges and face outlines stay covered
+    static final int MASK_PADDING = 4;
     private static DetectionUtils detectionUtils;
 
-    // ===== Regex patterns =====
-    private static final Pattern PHONE_PATTERN = Pattern.compile("(?:\\+91[-\\s]?)?[6-9]\\d{9}");
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}");
-    private static final Pattern CARD_PATTERN = Pattern.compile("\\b\\d{4}([- ]?\\d{4}){3}\\b");
-    private static final Pattern AADHAAR_PATTERN = Pattern.compile("\\b\\d{4}\\s?\\d{4}\\s?\\d{4}\\b");
-    private static final Pattern PAN_PATTERN = Pattern.compile("[A-Z]{5}[0-9]{4}[A-Z]");
-    private static final Pattern OTP_PATTERN = Pattern.compile("\\b\\d{4,8}\\b");
-
     public static void initialize(Context context) {
         if (detectionUtils == null) {
             detectionUtils = new DetectionUtils(context);
@@ -29,45 +24,71 @@ public class DetectionHandler {
         }
     }
 
+    // Drops the models when capture stops, so the registry can free them once idle
+    public static void release() {
+        if (detectionUtils != null) {
+            detectionUtils.cleanup();
+            detectionUtils = null;
+        }
+    }
+
+    // Face backend by name (FaceDetectorBackend.NAMES); ignored until initialized
+    public static void setFaceBackend(String name) {
+        if (detectionUtils != null) detectionUtils.setFaceBackend(name);
+    }
+
+    // Whether the last delivered results came from every detector, none of them loading,
+    // failed or timed out. Only meaningful in the callback that got them.
+    public static boolean isLastResultComplete() {
+        return detectionUtils != null && detectionUtils.isLastResultComplete();
+    }
+
     // ===== Process Images (Team B) =====
-    public static void processBitmap(Bitmap bitmap, ProcessingCallback callback) {
+    // Detection results are collected, masked and delivered on resultExecutor.
+    // The masked bitmap is acquired from outputPool and owned by the callback; when nothing
+    // needs masking it is the input bitmap itself. The result buffer is only valid during
+    // the callback. onReleased runs once no detector reads the input bitmap any more, which
+    // may be after the callback when a detector timed out.
+    public static void processBitmap(Bitmap bitmap, BitmapPool outputPool, MaskingUtils.MaskStyle maskStyle,
+                                     Executor resultExecutor, ProcessingCallback callback,
+                                     @Nullable Runnable onReleased) {
+        detectSensitiveAreas(bitmap, resultExecutor, results -> {
+            Bitmap maskedBitmap = MaskingUtils.maskRegions(bitmap, results, outputPool, MASK_PADDING, maskStyle);
+            callback.onProcessingComplete(maskedBitmap, results);
+        }, onReleased);
+    }
+
+    // Detection only, for callers that draw the masks themselves: no bitmap is produced.
+    // Boxes are in bitmap pixels and delivered on resultExecutor.
+    public static void detectSensitiveAreas(Bitmap bitmap, Executor resultExecutor, AreasCallback callback) {
+        detectSensitiveAreas(bitmap, resultExecutor, callback, null);
+    }
+
+    public static void detectSensitiveAreas(Bitmap bitmap, Executor resultExecutor, AreasCallback callback,
+                                            @Nullable Runnable onReleased) {
         if (detectionUtils == null) {
             Log.e(TAG, "DetectionHandler not initialized!");
-            callback.onProcessingComplete(bitmap, new Rect[0]);
+            callback.onAreasDetected(new DetectionBuffer());
+            if (onReleased != null) onReleased.run();
             return;
         }
 
-        detectionUtils.detectSensitiveRegions(bitmap, results -> {
-            List<Rect> sensitiveBoxes = new ArrayList<>();
-
-            for (DetectResult result : results) {
-                if (result.isSensitive()) {
-                    sensitiveBoxes.add(result.getBoundingBox());
-                    Log.d(TAG, "Found sensitive " + result.getType() + ": " + result.getText());
+        detectionUtils.detectSensitiveRegions(bitmap, resultExecutor, results -> {
+            for (int i = 0; i < results.size(); i++) {
+                if (results.isSensitive(i)) {
+                    Log.d(TAG, "Found sensitive " + results.typeName(i) + ": " + results.text(i));
                 }
             }
-
-            Rect[] sensitiveAreas = sensitiveBoxes.toArray(new Rect[0]);
-            Bitmap maskedBitmap = MaskingUtils.blackoutRegions(bitmap, sensitiveAreas);
-            callback.onProcessingComplete(maskedBitmap, sensitiveAreas);
-        });
+            callback.onAreasDetected(results);
+        }, onReleased);
     }
 
     // ===== Process Notification Text =====
     public static boolean checkForSensitiveContent(String text) {
         if (text == null || text.isEmpty()) return false;
 
-        String lower = text.toLowerCase();
-
-        return EMAIL_PATTERN.matcher(text).find() ||
-                CARD_PATTERN.matcher(text).find() ||
-                AADHAAR_PATTERN.matcher(text).find() ||
-                PAN_PATTERN.matcher(text).find() ||
-                PHONE_PATTERN.matcher(text).find() ||
-                OTP_PATTERN.matcher(text).find() ||
-                lower.contains("otp") ||
-                lower.contains("password") ||
-                lower.contains("pin");
+        // Email, card, Aadhaar, PAN, phone, OTP and the otp/password/pin keywords in one pass
+        return SensitiveTextScanner.containsAny(text, SensitiveTextScanner.ALL);
     }
 
     // ===== NEW: Find exact sensitive matches with ranges =====
@@ -75,40 +96,18 @@ public class DetectionHandler {
         List<MatchRegion> matches = new ArrayList<>();
         if (text == null || text.isEmpty()) return matches;
 
-        addMatches(text, EMAIL_PATTERN, matches);
-        addMatches(text, CARD_PATTERN, matches);
-        addMatches(text, AADHAAR_PATTERN, matches);
-        addMatches(text, PAN_PATTERN, matches);
-        addMatches(text, PHONE_PATTERN, matches);
-        addMatches(text, OTP_PATTERN, matches);
-
-        // Keyword-based
-        String lower = text.toLowerCase();
-        if (lower.contains("otp")) {
-            int index = lower.indexOf("otp");
-            matches.add(new MatchRegion(index, index + 3, "otp"));
-        }
-        if (lower.contains("password")) {
-            int index = lower.indexOf("password");
-            matches.add(new MatchRegion(index, index + 8, "password"));
-        }
-        if (lower.contains("pin")) {
-            int index = lower.indexOf("pin");
-            matches.add(new MatchRegion(index, index + 3, "pin"));
-        }
+        SensitiveTextScanner.scan(text, SensitiveTextScanner.ALL, (family, start, end) ->
+                matches.add(new MatchRegion(start, end, text.substring(start, end))));
 
         return matches;
     }
 
-    private static void addMatches(String text, Pattern pattern, List<MatchRegion> matches) {
-        Matcher m = pattern.matcher(text);
-        while (m.find()) {
-            matches.add(new MatchRegion(m.start(), m.end(), m.group()));
-        }
-    }
-
     // ===== Callback Interface =====
     public interface ProcessingCallback {
-        void onProcessingComplete(Bitmap processedBitmap, Rect[] sensitiveAreas);
+        void onProcessingComplete(Bitmap processedBitmap, DetectionBuffer results);
+    }
+
+    public interface AreasCallback {
+        void onAreasDetected(DetectionBuffer results);
     }
 }
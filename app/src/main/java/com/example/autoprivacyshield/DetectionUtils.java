@@ -2,173 +2,591 @@ package com.example.autoprivacyshield;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
-import com.google.mlkit.vision.face.FaceDetector;
-import com.google.mlkit.vision.face.FaceDetectorOptions;
 import com.google.mlkit.vision.text.Text;
-import com.google.mlkit.vision.text.TextRecognition;
 import com.google.mlkit.vision.text.TextRecognizer;
-import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class DetectionUtils {
     private static final String TAG = "DetectionUtils";
+    private static final int BLOCK_FAMILIES = SensitiveTextScanner.DIGITS_12
+            | SensitiveTextScanner.PAN_WORD
+            | SensitiveTextScanner.DIGITS_10
+            | SensitiveTextScanner.DATE
+            | SensitiveTextScanner.KEYWORDS
+            | SensitiveTextScanner.DIGITS_4;
+    // Context kept around each changed region so OCR sees whole lines
+    private static final int CROP_MARGIN = 32;
+    // Crop bitmaps are pooled in sizes rounded up to this step so regions of similar size share them
+    private static final int CROP_SIZE_STEP = FrameSignature.TILE_SIZE;
+    private static final int MAX_POOLED_CROPS_PER_SIZE = 2;
+
+    // Join slots, delivered in this order
+    private static final int SLOT_FACES = 0;
+    private static final int SLOT_TEXT = 1;
+    private static final int SLOT_OBJECTS = 2;
+    static final int SLOT_COUNT = 3;
+    private static final String[] SLOT_NAMES = {"Face detection", "OCR", "Object detection"};
+    // Kept under the capture service's result deadline so partial results are still fresh
+    private static final long FACE_TIMEOUT_MS = 400;
+    private static final long TEXT_TIMEOUT_MS = 450;
+    private static final long OBJECT_TIMEOUT_MS = 400;
+    // Still images have no deadline; only a stuck detector should time out
+    private static final long STILL_TIMEOUT_MS = 10_000;
+    private static final long TIMEOUT_RETRY_MS = 5;
+    // Per frame: three slot buffers, the joined output and a late pass or two
+    private static final int MAX_POOLED_BUFFERS = 7;
+
+    private final Context appContext;
+    private final boolean stillImages;
+    private final long faceTimeoutMs;
+    private final long textTimeoutMs;
+    private final long objectTimeoutMs;
+    // Swappable at runtime; models are shared with the rest of the process
+    private volatile FaceDetectorBackend faceBackend;
+    private final ModelRegistry.Handle<TextRecognizer> textModel;
+    private final ModelRegistry.Handle<YoloV8Helper> yoloModel;
+    // The interpreter call blocks, so object detection gets its own thread
+    private final PipelineStage objectStage = new PipelineStage("objects", 1, Process.THREAD_PRIORITY_DEFAULT);
+    private final Handler timeoutHandler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<DetectionBuffer> freeBuffers = new ArrayDeque<>();
+    private final BitmapPool cropPool = new BitmapPool(MAX_POOLED_CROPS_PER_SIZE);
+    private volatile boolean lastResultComplete;
 
-    private FaceDetector faceDetector;
-    private TextRecognizer textRecognizer;
-    private YoloV8Helper yoloHelper;
+    // Incremental OCR state, guarded by this
+    private final DirtyRegionTracker dirtyRegions = new DirtyRegionTracker(CROP_MARGIN);
+    private final DetectionBuffer lastTextResults = new DetectionBuffer();
+    private final Rect scratchBox = new Rect();
+    private int textGeneration;
+    private int textPassesRunning;
+
+    // Object detection state, guarded by this
+    private final DetectionBuffer lastObjectResults = new DetectionBuffer();
+    private YoloV8Helper objectInputModel;
+    private YoloV8Helper.InputBuffer objectInput;
+    private boolean objectPassRunning;
 
     public DetectionUtils(Context context) {
-        FaceDetectorOptions faceOptions = new FaceDetectorOptions.Builder()
-                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
-                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
-                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
-                .build();
+        this(context, false);
+    }
 
-        faceDetector = FaceDetection.getClient(faceOptions);
-        textRecognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+    /**
+     * For unrelated images such as a gallery scan: no OCR or objects are carried over from
+     * the previous image, detectors get {@link #STILL_TIMEOUT_MS}, and faces always use ML
+     * Kit, which also finds the small, distant faces BlazeFace short-range misses.
+     */
+    public static DetectionUtils forStillImages(Context context) {
+        return new DetectionUtils(context, true);
+    }
 
-        try {
-            yoloHelper = new YoloV8Helper(context);
-            Log.d(TAG, "✅ YOLO model loaded successfully!");
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Failed to load YOLO model (this is optional)", e);
-            yoloHelper = null;
-        }
+    private DetectionUtils(Context context, boolean stillImages) {
+        appContext = context.getApplicationContext();
+        this.stillImages = stillImages;
+        faceTimeoutMs = stillImages ? STILL_TIMEOUT_MS : FACE_TIMEOUT_MS;
+        textTimeoutMs = stillImages ? STILL_TIMEOUT_MS : TEXT_TIMEOUT_MS;
+        objectTimeoutMs = stillImages ? STILL_TIMEOUT_MS : OBJECT_TIMEOUT_MS;
+        faceBackend = FaceDetectorBackend.create(appContext, stillImages
+                ? FaceDetectorBackend.MLKIT : FaceBackendBenchmark.recommendedBackend(appContext));
+        textModel = ModelRegistry.acquireTextRecognizer(context);
+        yoloModel = ModelRegistry.acquireYolo(context);
+        Log.d(TAG, "DetectionUtils initialized with " + faceBackend.getName() + " faces + ML Kit OCR");
+    }
+
+    /** Switches the face backend ({@link FaceDetectorBackend#NAMES}); frames in flight finish on the old one. */
+    public synchronized void setFaceBackend(String name) {
+        FaceDetectorBackend previous = faceBackend;
+        if (previous.getName().equals(name)) return;
+        faceBackend = FaceDetectorBackend.create(appContext, name);
+        previous.close();
+        Log.d(TAG, "Face backend: " + faceBackend.getName());
+    }
+
+    public String getFaceBackend() {
+        return faceBackend.getName();
+    }
+
+    /**
+     * Names the detectors results would come from right now, for keying cached results:
+     * the face backend, the text recognizer, and the object model if it has loaded.
+     */
+    public String getConfig() {
+        return faceBackend.getName() + "+" + ModelRegistry.TEXT_RECOGNIZER
+                + "+" + (yoloModel.get() != null ? ModelRegistry.YOLO : "none");
+    }
 
-        Log.d(TAG, "DetectionUtils initialized with ML Kit Face + OCR detection");
+    /**
+     * Whether the last results delivered came from every detector: none failed, timed out,
+     * was still loading or was busy. Only meaningful on the thread that got the callback.
+     */
+    public boolean isLastResultComplete() {
+        return lastResultComplete;
     }
 
-    public void detectSensitiveRegions(Bitmap bitmap, DetectionCallback callback) {
-        List<DetectResult> results = new ArrayList<>();
+    /**
+     * Waits up to {@code timeoutMs} in total for the models to load, so no image is
+     * checked by a detector that is still loading. Blocking; true if faces and OCR are
+     * available. Object detection is optional.
+     */
+    public boolean awaitModels(long timeoutMs) {
+        long deadline = SystemClock.elapsedRealtime() + timeoutMs;
+        boolean faces = faceBackend.awaitReady(timeoutMs);
+        boolean text = textModel.await(Math.max(0, deadline - SystemClock.elapsedRealtime())) != null;
+        yoloModel.await(Math.max(0, deadline - SystemClock.elapsedRealtime()));
+        return faces && text;
+    }
+
+    /**
+     * Runs face detection, text recognition and object detection in parallel and joins
+     * them. A detector that fails or misses its timeout contributes no results; the others
+     * are still delivered. A detector whose model is still loading also contributes nothing
+     * for this frame.
+     * Result listeners (and the callback) run on resultExecutor.
+     */
+    public void detectSensitiveRegions(Bitmap bitmap, Executor resultExecutor, DetectionCallback callback) {
+        detectSensitiveRegions(bitmap, resultExecutor, callback, null);
+    }
+
+    /**
+     * As above. A detector that timed out may still be reading {@code bitmap} after the
+     * callback, so the bitmap must stay untouched until {@code onReleased} runs, on
+     * resultExecutor, once every detector has returned.
+     */
+    public void detectSensitiveRegions(Bitmap bitmap, Executor resultExecutor, DetectionCallback callback,
+                                       @Nullable Runnable onReleased) {
+        InterpreterTuner.noteDetection();
         InputImage image = InputImage.fromBitmap(bitmap, 0);
+        DetectionJoin join = new DetectionJoin(resultExecutor, callback, onReleased);
+        TextRecognizer textRecognizer = textModel.get();
+        YoloV8Helper yolo = yoloModel.get();
+
+        detectFaces(faceBackend, bitmap, join);
+
+        // Empty slots still complete on resultExecutor, like detector results
+        if (textRecognizer == null) {
+            join.markPartial();
+            join.post(() -> join.complete(SLOT_TEXT, acquireBuffer()));
+        } else {
+            int textPass = recognizeText(textRecognizer, bitmap, image, resultExecutor,
+                    textResults -> join.complete(SLOT_TEXT, textResults));
+            join.startTimeout(SLOT_TEXT, textTimeoutMs, () -> abandonText(textPass));
+        }
+
+        if (yolo == null) {
+            if (yoloModel.isLoading()) join.markPartial();
+            join.post(() -> join.complete(SLOT_OBJECTS, acquireBuffer()));
+        } else {
+            detectObjects(yolo, bitmap, join);
+        }
+    }
+
+    private void detectFaces(FaceDetectorBackend backend, Bitmap bitmap, DetectionJoin join) {
+        // A loading model finds no faces, which is not the same as there being none
+        if (backend.isLoading()) join.markPartial();
+        join.startTimeout(SLOT_FACES, faceTimeoutMs, null);
+        DetectionBuffer faceResults = acquireBuffer();
+        backend.detect(bitmap, faceResults, join::post, error -> {
+            if (error != null) {
+                Log.e(TAG, "Face detection failed", error);
+                join.markPartial();
+                faceResults.clear();
+            } else {
+                Log.d(TAG, "Face detection completed - found " + faceResults.size() + " faces");
+            }
+            join.complete(SLOT_FACES, faceResults);
+        });
+    }
+
+    /**
+     * Letterboxes the frame on the calling thread, which still owns the bitmap, and runs
+     * the interpreter on the object stage. While a pass is still running the previous
+     * pass's objects are carried forward instead of queueing another frame; still images
+     * get none, since the previous image's objects are unrelated.
+     */
+    private void detectObjects(YoloV8Helper yolo, Bitmap bitmap, DetectionJoin join) {
+        DetectionBuffer objectResults = acquireBuffer();
+        YoloV8Helper.InputBuffer input;
+        synchronized (this) {
+            if (objectPassRunning) {
+                join.markPartial();
+                if (!stillImages) objectResults.addAll(lastObjectResults);
+                join.post(() -> join.complete(SLOT_OBJECTS, objectResults));
+                return;
+            }
+            objectPassRunning = true;
+            if (objectInputModel != yolo) {
+                objectInputModel = yolo;
+                objectInput = yolo.newInputBuffer();
+            }
+            input = objectInput;
+        }
+
+        yolo.prepare(input, bitmap);
+        join.startTimeout(SLOT_OBJECTS, objectTimeoutMs, null);
+        boolean queued = objectStage.tryExecute(() -> {
+            int found = yolo.detect(input, objectResults);
+            Log.d(TAG, "Object detection completed - found " + found + " objects");
+            synchronized (DetectionUtils.this) {
+                lastObjectResults.clear();
+                lastObjectResults.addAll(objectResults);
+                objectPassRunning = false;
+            }
+            join.post(() -> join.complete(SLOT_OBJECTS, objectResults));
+        });
+        if (!queued) {
+            synchronized (this) {
+                objectPassRunning = false;
+            }
+            join.markPartial();
+            join.post(() -> join.complete(SLOT_OBJECTS, objectResults));
+        }
+    }
+
+    /**
+     * Copies {@code region} of the frame into the top-left corner of a pooled bitmap. The
+     * rest of the bitmap, up to the next size step, is blank, so it adds no text and leaves
+     * result boxes relative to the region.
+     */
+    private Bitmap acquireCrop(Bitmap frame, Rect region) {
+        int width = roundUp(region.width(), CROP_SIZE_STEP);
+        int height = roundUp(region.height(), CROP_SIZE_STEP);
+        Bitmap crop = cropPool.acquire(width, height, Bitmap.Config.ARGB_8888);
+        if (width != region.width() || height != region.height()) crop.eraseColor(Color.WHITE);
+        new Canvas(crop).drawBitmap(frame, region, new Rect(0, 0, region.width(), region.height()), null);
+        return crop;
+    }
+
+    private static int roundUp(int value, int step) {
+        return (value + step - 1) / step * step;
+    }
+
+    // ===== Result buffers =====
+
+    private DetectionBuffer acquireBuffer() {
+        DetectionBuffer buffer;
+        synchronized (freeBuffers) {
+            buffer = freeBuffers.pollFirst();
+        }
+        return buffer != null ? buffer : new DetectionBuffer();
+    }
+
+    private void releaseBuffer(DetectionBuffer buffer) {
+        buffer.clear();
+        synchronized (freeBuffers) {
+            if (freeBuffers.size() < MAX_POOLED_BUFFERS) freeBuffers.addFirst(buffer);
+        }
+    }
+
+    // ===== Parallel join =====
+
+    /**
+     * Collects one result buffer per detector and delivers faces, text, then objects once
+     * every slot is filled, either by its detector or by its timeout. {@link #complete} takes ownership
+     * of the buffer it is given; late results are released unused. Once the results are
+     * delivered and every detector, late ones included, has returned, onReleased runs.
+     */
+    private final class DetectionJoin {
+        private final Executor resultExecutor;
+        private final DetectionCallback callback;
+        private final Runnable onReleased;
+        private final DetectionBuffer[] slots = new DetectionBuffer[SLOT_COUNT];
+        private final List<Runnable> timeouts = new ArrayList<>(SLOT_COUNT);
+        private int remaining = SLOT_COUNT;
+        private int returned;
+        private boolean delivered;
+        private boolean released;
+        private boolean partial;
 
-        faceDetector.process(image)
-                .addOnSuccessListener(faces -> {
-                    Log.d(TAG, "Face detection completed - found " + faces.size() + " faces");
-
-                    for (Face face : faces) {
-                        DetectResult faceResult = new DetectResult(
-                                "Face detected", // text
-                                true,            // sensitive
-                                "FACE",          // type
-                                face.getBoundingBox() // boundingBox
-                        );
-                        results.add(faceResult);
+        DetectionJoin(Executor resultExecutor, DetectionCallback callback, Runnable onReleased) {
+            this.resultExecutor = resultExecutor;
+            this.callback = callback;
+            this.onReleased = onReleased;
+        }
+
+        void startTimeout(int slot, long timeoutMs, Runnable onTimeout) {
+            Runnable timeout = () -> post(() -> {
+                if (isFilled(slot)) return;
+                Log.w(TAG, SLOT_NAMES[slot] + " timed out after " + timeoutMs + "ms - delivering partial results");
+                markPartial();
+                if (onTimeout != null) onTimeout.run();
+                fill(slot, acquireBuffer(), false);
+            });
+            synchronized (this) {
+                if (remaining == 0) return;
+                timeouts.add(timeout);
+            }
+            timeoutHandler.postDelayed(timeout, timeoutMs);
+        }
+
+        synchronized void markPartial() {
+            partial = true;
+        }
+
+        synchronized boolean isFilled(int slot) {
+            return slots[slot] != null;
+        }
+
+        /** The slot's detector returned; it no longer reads the bitmap. */
+        void complete(int slot, DetectionBuffer slotResults) {
+            fill(slot, slotResults, true);
+        }
+
+        private void fill(int slot, DetectionBuffer slotResults, boolean fromDetector) {
+            boolean deliver = false;
+            synchronized (this) {
+                if (fromDetector) returned++;
+                if (slots[slot] != null) {
+                    // Already timed out
+                    releaseBuffer(slotResults);
+                } else {
+                    slots[slot] = slotResults;
+                    deliver = --remaining == 0;
+                    if (deliver) {
+                        for (Runnable timeout : timeouts) {
+                            timeoutHandler.removeCallbacks(timeout);
+                        }
+                        lastResultComplete = !partial;
                     }
+                }
+            }
+            if (deliver) deliver();
+            releaseIfDone();
+        }
 
-                    textRecognizer.process(image)
-                            .addOnSuccessListener(visionText -> {
-                                Log.d(TAG, "OCR detection completed");
-
-                                List<Text.TextBlock> blocks = visionText.getTextBlocks();
-                                for (Text.TextBlock block : blocks) {
-                                    String blockText = block.getText();
-                                    if (blockText != null && !blockText.trim().isEmpty()) {
-                                        boolean isSensitive = isSensitiveText(blockText);
-                                        String sensitiveType = getSensitiveType(blockText);
-
-                                        DetectResult textResult = new DetectResult(
-                                                blockText.trim(),      // text
-                                                isSensitive,           // sensitive
-                                                sensitiveType,         // type
-                                                block.getBoundingBox() // boundingBox
-                                        );
-                                        results.add(textResult);
-                                    }
-                                }
-
-                                Log.d(TAG, "Detection complete - total results: " + results.size());
-                                callback.onDetectionComplete(results);
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e(TAG, "OCR failed", e);
-                                callback.onDetectionComplete(results);
-                            });
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Face detection failed", e);
-
-                    // Try OCR only if face detection fails
-                    textRecognizer.process(image)
-                            .addOnSuccessListener(visionText -> {
-                                List<Text.TextBlock> blocks = visionText.getTextBlocks();
-                                for (Text.TextBlock block : blocks) {
-                                    String blockText = block.getText();
-                                    if (blockText != null && !blockText.trim().isEmpty()) {
-                                        boolean isSensitive = isSensitiveText(blockText);
-                                        String sensitiveType = getSensitiveType(blockText);
-
-                                        DetectResult textResult = new DetectResult(
-                                                blockText.trim(),      // text
-                                                isSensitive,           // sensitive
-                                                sensitiveType,         // type
-                                                block.getBoundingBox() // boundingBox
-                                        );
-                                        results.add(textResult);
-                                    }
-                                }
-                                callback.onDetectionComplete(results);
-                            })
-                            .addOnFailureListener(ocrError -> {
-                                Log.e(TAG, "Both face and OCR detection failed", ocrError);
-                                callback.onDetectionComplete(new ArrayList<>());
-                            });
-                });
+        private void deliver() {
+            DetectionBuffer results = acquireBuffer();
+            for (DetectionBuffer filled : slots) {
+                results.addAll(filled);
+                releaseBuffer(filled);
+            }
+            Log.d(TAG, "Detection complete - total results: " + results.size());
+            callback.onDetectionComplete(results);
+            releaseBuffer(results);
+            synchronized (this) {
+                delivered = true;
+            }
+        }
+
+        // onReleased runs once, after delivery, when no detector reads the bitmap any more
+        private void releaseIfDone() {
+            synchronized (this) {
+                if (released || !delivered || returned < SLOT_COUNT) return;
+                released = true;
+            }
+            if (onReleased != null) onReleased.run();
+        }
+
+        // Runs on resultExecutor; an executor that refuses the task (e.g. a full pool) is retried shortly
+        void post(Runnable task) {
+            try {
+                resultExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                timeoutHandler.postDelayed(() -> post(task), TIMEOUT_RETRY_MS);
+            }
+        }
     }
 
-    // Sensitive data detection logic (Aadhaar, PAN, phone number, DOB, OTP, password, PIN)
-    private boolean isSensitiveText(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return false;
+    // ===== Incremental OCR =====
+
+    /**
+     * Runs OCR only on the regions that changed since the previous frame and carries
+     * forward the text results outside them. Falls back to a full-frame pass on the
+     * first frame, after a size change, or when most of the screen changed.
+     * An OCR failure yields no results and forces the next frame to a full pass.
+     * The buffer handed to {@code textCallback} is owned by it.
+     *
+     * @return the pass's generation, for {@link #abandonText}
+     */
+    private int recognizeText(TextRecognizer textRecognizer, Bitmap bitmap, InputImage image,
+                              Executor resultExecutor, DetectionCallback textCallback) {
+        DetectionBuffer carried = acquireBuffer();
+        int generation;
+        List<Rect> regions;
+        synchronized (this) {
+            generation = ++textGeneration;
+            regions = planTextRegions(bitmap, carried);
+            textPassesRunning++;
+        }
+
+        if (regions == null) {
+            // carried is empty for a full-frame pass
+            textRecognizer.process(image)
+                    .addOnSuccessListener(resultExecutor, visionText -> {
+                        addTextBlocks(visionText, 0, 0, carried);
+                        finishText(generation, carried, true);
+                        textCallback.onDetectionComplete(carried);
+                    })
+                    .addOnFailureListener(resultExecutor, e -> {
+                        Log.e(TAG, "OCR failed", e);
+                        finishText(generation, carried, false);
+                        textCallback.onDetectionComplete(carried);
+                    });
+            return generation;
+        }
+
+        if (regions.isEmpty()) {
+            // Delivered like detector results, never on the calling thread
+            resultExecutor.execute(() -> {
+                finishText(generation, carried, true);
+                textCallback.onDetectionComplete(carried);
+            });
+            return generation;
         }
 
-        String cleanText = text.replaceAll("\\s+", " ").trim();
+        // Crops are pooled copies; ML Kit reads them until the tasks complete
+        int carriedCount = carried.size();
+        List<Bitmap> crops = new ArrayList<>(regions.size());
+        List<Task<Text>> tasks = new ArrayList<>(regions.size());
+        for (Rect region : regions) {
+            Bitmap crop = acquireCrop(bitmap, region);
+            crops.add(crop);
+            tasks.add(textRecognizer.process(InputImage.fromBitmap(crop, 0)));
+        }
+
+        Tasks.whenAllComplete(tasks).addOnCompleteListener(resultExecutor, done -> {
+            boolean ok = true;
+            for (int i = 0; i < tasks.size(); i++) {
+                Task<Text> task = tasks.get(i);
+                if (task.isSuccessful()) {
+                    Rect region = regions.get(i);
+                    addTextBlocks(task.getResult(), region.left, region.top, carried);
+                } else {
+                    Log.e(TAG, "OCR failed on changed region", task.getException());
+                    ok = false;
+                }
+                cropPool.release(crops.get(i));
+            }
+            Log.d(TAG, "Incremental OCR - " + regions.size() + " regions, "
+                    + carriedCount + " results carried forward");
+            finishText(generation, carried, ok);
+            textCallback.onDetectionComplete(carried);
+        });
+        return generation;
+    }
+
+    /**
+     * Returns the crop regions for this frame, or null for a full-frame pass. Previous
+     * results outside the regions go into {@code carried}; those touching a region grow
+     * it so they are re-detected whole.
+     */
+    private List<Rect> planTextRegions(Bitmap bitmap, DetectionBuffer carried) {
+        if (stillImages) return null;
+        // Always update so the tracker follows every frame, but only trust it when no other
+        // pass is still producing the results it would be compared against
+        boolean incremental = dirtyRegions.update(bitmap) && textPassesRunning == 0;
+        if (!incremental) return null;
+
+        Rect box = scratchBox;
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (int i = 0; i < lastTextResults.size(); i++) {
+                lastTextResults.copyBoxTo(i, box);
+                if (dirtyRegions.intersectsDirty(box) && dirtyRegions.include(box)) {
+                    grown = true;
+                }
+            }
+        }
+
+        for (int i = 0; i < lastTextResults.size(); i++) {
+            if (!dirtyRegions.intersectsDirty(lastTextResults.copyBoxTo(i, box))) {
+                carried.addFrom(lastTextResults, i);
+            }
+        }
+        return new ArrayList<>(dirtyRegions.getDirtyRegions());
+    }
+
+    private synchronized void finishText(int generation, DetectionBuffer textResults, boolean ok) {
+        textPassesRunning--;
+        if (generation != textGeneration) return; // a newer pass owns the carried-forward state
+
+        lastTextResults.clear();
+        if (ok) {
+            lastTextResults.addAll(textResults);
+        } else {
+            dirtyRegions.reset();
+        }
+    }
 
-        return Pattern.matches(".*\\b\\d{12}\\b.*", cleanText) ||  // Aadhaar (12 digits)
-                Pattern.matches(".*\\b[A-Z]{5}[0-9]{4}[A-Z]\\b.*", cleanText) ||  // PAN
-                Pattern.matches(".*\\b\\d{10}\\b.*", cleanText) ||  // Phone number (10 digits)
-                Pattern.matches(".*\\b\\d{2}/\\d{2}/\\d{4}\\b.*", cleanText) ||  // Date of birth
-                Pattern.matches(".*\\b\\d{4}-\\d{2}-\\d{2}\\b.*", cleanText) ||  // ISO date
-                cleanText.toLowerCase().contains("otp") ||
-                cleanText.toLowerCase().contains("password") ||
-                cleanText.toLowerCase().contains("pin") ||
-                Pattern.matches(".*\\b\\d{4}\\b.*", cleanText); // 4-digit codes (PIN/OTP)
+    /**
+     * Called when a pass times out: the frame may be reused before OCR finishes reading it,
+     * so its late result must not become the carried-forward state.
+     */
+    private synchronized void abandonText(int generation) {
+        if (generation != textGeneration) return;
+        textGeneration++;
+        lastTextResults.clear();
+        dirtyRegions.reset();
     }
 
-    private String getSensitiveType(String text) {
-        if (text == null) return "TEXT";
+    // Boxes are shifted by (offsetX, offsetY) from crop to frame coordinates
+    private void addTextBlocks(Text visionText, int offsetX, int offsetY, DetectionBuffer out) {
+        for (Text.TextBlock block : visionText.getTextBlocks()) {
+            String blockText = block.getText();
+            Rect box = block.getBoundingBox();
+            if (isBlank(blockText) || box == null) continue;
 
-        String cleanText = text.replaceAll("\\s+", " ").trim();
+            int type = getSensitiveType(blockText);
+            int flags = type != DetectionBuffer.TYPE_TEXT ? DetectionBuffer.FLAG_SENSITIVE : 0;
+            out.add(box, offsetX, offsetY, type, flags, blockText);
+        }
+    }
 
-        if (Pattern.matches(".*\\b\\d{12}\\b.*", cleanText)) return "AADHAAR";
-        if (Pattern.matches(".*\\b[A-Z]{5}[0-9]{4}[A-Z]\\b.*", cleanText)) return "PAN";
-        if (Pattern.matches(".*\\b\\d{10}\\b.*", cleanText)) return "PHONE";
-        if (Pattern.matches(".*\\b\\d{2}/\\d{2}/\\d{4}\\b.*", cleanText) ||
-                Pattern.matches(".*\\b\\d{4}-\\d{2}-\\d{2}\\b.*", cleanText)) return "DOB";
-        if (cleanText.toLowerCase().contains("otp")) return "OTP";
-        if (cleanText.toLowerCase().contains("password")) return "PASSWORD";
-        if (cleanText.toLowerCase().contains("pin")) return "PIN";
-        if (Pattern.matches(".*\\b\\d{4}\\b.*", cleanText)) return "CODE";
+    private static boolean isBlank(CharSequence text) {
+        if (text == null) return true;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
 
-        return "TEXT";
+    // Sensitive data detection logic (Aadhaar, PAN, phone number, DOB, OTP, password, PIN)
+    // One scanner pass per block; the type checks below keep their original precedence.
+    private int getSensitiveType(CharSequence text) {
+        if (text == null) return DetectionBuffer.TYPE_TEXT;
+
+        int found = SensitiveTextScanner.scan(text, BLOCK_FAMILIES);
+
+        if ((found & SensitiveTextScanner.DIGITS_12) != 0) return DetectionBuffer.TYPE_AADHAAR;
+        if ((found & SensitiveTextScanner.PAN_WORD) != 0) return DetectionBuffer.TYPE_PAN;
+        if ((found & SensitiveTextScanner.DIGITS_10) != 0) return DetectionBuffer.TYPE_PHONE;
+        if ((found & SensitiveTextScanner.DATE) != 0) return DetectionBuffer.TYPE_DOB;
+        if ((found & SensitiveTextScanner.KEYWORD_OTP) != 0) return DetectionBuffer.TYPE_OTP;
+        if ((found & SensitiveTextScanner.KEYWORD_PASSWORD) != 0) return DetectionBuffer.TYPE_PASSWORD;
+        if ((found & SensitiveTextScanner.KEYWORD_PIN) != 0) return DetectionBuffer.TYPE_PIN;
+        if ((found & SensitiveTextScanner.DIGITS_4) != 0) return DetectionBuffer.TYPE_CODE; // 4-digit codes (PIN/OTP)
+
+        return DetectionBuffer.TYPE_TEXT;
     }
 
     public interface DetectionCallback {
-        void onDetectionComplete(List<DetectResult> results);
+        /** {@code results} is reused after the call returns; copy anything kept longer. */
+        void onDetectionComplete(DetectionBuffer results);
     }
 
     public void cleanup() {
-        if (yoloHelper != null) {
-            yoloHelper.close();
-        }
+        faceBackend.close();
+        textModel.close();
+        yoloModel.close();
+        objectStage.quit();
+        cropPool.close();
         Log.d(TAG, "DetectionUtils cleaned up");
     }
 }
@@ -0,0 +1,139 @@
+package com.example.autoprivacyshield;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks which {@link FrameSignature} tiles changed since the previous frame and
+ * merges them into a few crop rectangles (with a margin) for incremental detection.
+ * Every pixel of a tile is hashed, so no changed glyph is carried forward from stale OCR.
+ */
+public class DirtyRegionTracker {
+    // Above this share of changed tiles one full-frame pass is cheaper than many crops
+    private static final float FULL_FRAME_DIRTY_FRACTION = 0.5f;
+
+    private final int margin;
+    private FrameSignature current = new FrameSignature();
+    private FrameSignature previous = new FrameSignature();
+    private boolean hasPrevious;
+    private int width;
+    private int height;
+    private final List<Rect> dirtyRegions = new ArrayList<>();
+
+    public DirtyRegionTracker(int margin) {
+        this.margin = margin;
+    }
+
+    /**
+     * Compares {@code frame} with the previous frame and rebuilds the dirty regions.
+     *
+     * @return false if the whole frame must be processed (first frame, size change,
+     * or too much of the screen changed); the dirty regions are then meaningless
+     */
+    public boolean update(Bitmap frame) {
+        width = frame.getWidth();
+        height = frame.getHeight();
+
+        FrameSignature swap = previous;
+        previous = current;
+        current = swap;
+        current.compute(frame);
+
+        dirtyRegions.clear();
+        boolean comparable = hasPrevious && current.hasSameGeometry(previous);
+        hasPrevious = true;
+        if (!comparable) return false;
+
+        int columns = current.getColumns();
+        int rows = current.getRows();
+        int changed = 0;
+        int tile = FrameSignature.TILE_SIZE;
+
+        // Horizontal runs of changed tiles, expanded by the margin
+        for (int row = 0; row < rows; row++) {
+            int runStart = -1;
+            for (int column = 0; column <= columns; column++) {
+                boolean dirty = column < columns && current.isTileChanged(previous, column, row);
+                if (dirty) {
+                    changed++;
+                    if (runStart < 0) runStart = column;
+                } else if (runStart >= 0) {
+                    dirtyRegions.add(new Rect(runStart * tile, row * tile, column * tile, (row + 1) * tile));
+                    runStart = -1;
+                }
+            }
+        }
+
+        if (changed > FULL_FRAME_DIRTY_FRACTION * columns * rows) {
+            dirtyRegions.clear();
+            return false;
+        }
+
+        for (Rect region : dirtyRegions) {
+            expand(region);
+        }
+        mergeOverlapping(dirtyRegions);
+        return true;
+    }
+
+    /** Forgets the previous frame so the next update reports a full-frame pass. */
+    public void reset() {
+        hasPrevious = false;
+        dirtyRegions.clear();
+    }
+
+    public List<Rect> getDirtyRegions() {
+        return dirtyRegions;
+    }
+
+    /** True if {@code box} overlaps a dirty region, i.e. a result there must be re-detected. */
+    public boolean intersectsDirty(Rect box) {
+        for (Rect region : dirtyRegions) {
+            if (Rect.intersects(region, box)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Grows the dirty regions to fully cover {@code box} (a previous result that is being
+     * re-detected), so the crop does not cut it in half.
+     *
+     * @return false if a region already contained the box
+     */
+    public boolean include(Rect box) {
+        Rect grown = new Rect(Math.max(0, box.left), Math.max(0, box.top),
+                Math.min(width, box.right), Math.min(height, box.bottom));
+        for (Rect region : dirtyRegions) {
+            if (region.contains(grown)) return false;
+        }
+        expand(grown);
+        dirtyRegions.add(grown);
+        mergeOverlapping(dirtyRegions);
+        return true;
+    }
+
+    private void expand(Rect rect) {
+        rect.set(Math.max(0, rect.left - margin), Math.max(0, rect.top - margin),
+                Math.min(width, rect.right + margin), Math.min(height, rect.bottom + margin));
+    }
+
+    private static void mergeOverlapping(List<Rect> rects) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < rects.size() && !merged; i++) {
+                Rect a = rects.get(i);
+                for (int j = i + 1; j < rects.size(); j++) {
+                    if (Rect.intersects(a, rects.get(j))) {
+                        a.union(rects.remove(j));
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.autoprivacyshield;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every face backend over the same frames and compares latency and agreement.
+ * ML Kit (accurate mode) is the reference: a faster backend is recommended only if it
+ * finds most of the faces ML Kit finds. The recommendation is stored and becomes the
+ * default backend of {@link DetectionUtils}.
+ *
+ * Blocking; run it off the main thread.
+ */
+public class FaceBackendBenchmark {
+    private static final String TAG = "FaceBackendBenchmark";
+    private static final String PREFS_NAME = "face_backend";
+    private static final String KEY_BACKEND = "backend";
+
+    private static final long LOAD_TIMEOUT_MS = 10_000;
+    private static final long FRAME_TIMEOUT_MS = 2_000;
+    // Faces count as the same when their boxes overlap this much
+    private static final float MATCH_IOU = 0.3f;
+    // Share of the reference faces a faster backend must find to be recommended
+    private static final float MIN_RECALL = 0.9f;
+
+    /** Timings and findings of one backend over the benchmark frames. */
+    public static final class Result {
+        public final String backend;
+        public final double medianMs;
+        public final double p90Ms;
+        public final int faces;
+        public final int failures;
+        /** Share of the reference backend's faces this backend also found. */
+        public float recall = 1f;
+        final DetectionBuffer[] perFrame;
+
+        Result(String backend, double[] timings, DetectionBuffer[] perFrame, int failures) {
+            this.backend = backend;
+            this.perFrame = perFrame;
+            this.failures = failures;
+            double[] sorted = timings.clone();
+            Arrays.sort(sorted);
+            medianMs = sorted.length == 0 ? 0 : sorted[sorted.length / 2];
+            p90Ms = sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.9))];
+            int total = 0;
+            for (DetectionBuffer frame : perFrame) total += frame.size();
+            faces = total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: median %.1f ms, p90 %.1f ms, %d faces, recall %.2f, %d failures",
+                    backend, medianMs, p90Ms, faces, recall, failures);
+        }
+    }
+
+    /** Benchmarks every backend on {@code frames}; the first result is the ML Kit reference. */
+    public static List<Result> run(Context context, List<Bitmap> frames) {
+        List<Result> results = new ArrayList<>();
+        for (String name : FaceDetectorBackend.NAMES) {
+            try (FaceDetectorBackend backend = FaceDetectorBackend.create(context, name)) {
+                if (!backend.awaitReady(LOAD_TIMEOUT_MS)) {
+                    Log.w(TAG, name + " did not load; skipped");
+                    continue;
+                }
+                results.add(runBackend(backend, frames));
+            }
+        }
+
+        if (!results.isEmpty() && results.get(0).backend.equals(FaceDetectorBackend.MLKIT)) {
+            Result reference = results.get(0);
+            for (Result result : results) {
+                result.recall = recall(reference, result);
+            }
+        }
+        for (Result result : results) {
+            Log.d(TAG, result.toString());
+        }
+        return results;
+    }
+
+    /**
+     * Picks the fastest backend that keeps {@link #MIN_RECALL} against the reference and
+     * stores it as the default.
+     */
+    public static String recommend(Context context, List<Result> results) {
+        String best = FaceDetectorBackend.MLKIT;
+        double bestMs = Double.MAX_VALUE;
+        for (Result result : results) {
+            if (result.failures > 0 || result.recall < MIN_RECALL) continue;
+            if (result.medianMs < bestMs) {
+                bestMs = result.medianMs;
+                best = result.backend;
+            }
+        }
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(KEY_BACKEND, best).apply();
+        Log.d(TAG, "Recommended face backend: " + best);
+        return best;
+    }
+
+    /** Whether a benchmark has stored a recommendation yet. */
+    public static boolean hasRecommendation(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).contains(KEY_BACKEND);
+    }
+
+    /** The stored recommendation, or ML Kit before any benchmark has run. */
+    public static String recommendedBackend(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(KEY_BACKEND, FaceDetectorBackend.MLKIT);
+    }
+
+    // ===== Measurement =====
+
+    private static Result runBackend(FaceDetectorBackend backend, List<Bitmap> frames) {
+        // One untimed frame so lazy initialisation is not counted
+        if (!frames.isEmpty()) detectBlocking(backend, frames.get(0), new DetectionBuffer());
+
+        double[] timings = new double[frames.size()];
+        DetectionBuffer[] perFrame = new DetectionBuffer[frames.size()];
+        int failures = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            perFrame[i] = new DetectionBuffer();
+            long start = System.nanoTime();
+            if (!detectBlocking(backend, frames.get(i), perFrame[i])) failures++;
+            timings[i] = (System.nanoTime() - start) / 1e6;
+        }
+        return new Result(backend.getName(), timings, perFrame, failures);
+    }
+
+    private static boolean detectBlocking(FaceDetectorBackend backend, Bitmap frame, DetectionBuffer out) {
+        CountDownLatch done = new CountDownLatch(1);
+        boolean[] ok = new boolean[1];
+        backend.detect(frame, out, Runnable::run, error -> {
+            ok[0] = error == null;
+            done.countDown();
+        });
+        try {
+            return done.await(FRAME_TIMEOUT_MS, TimeUnit.MILLISECONDS) && ok[0];
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static float recall(Result reference, Result candidate) {
+        int expected = 0;
+        int found = 0;
+        for (int f = 0; f < reference.perFrame.length; f++) {
+            DetectionBuffer wanted = reference.perFrame[f];
+            DetectionBuffer got = candidate.perFrame[f];
+            for (int i = 0; i < wanted.size(); i++) {
+                expected++;
+                for (int j = 0; j < got.size(); j++) {
+                    if (iou(wanted, i, got, j) >= MATCH_IOU) {
+                        found++;
+                        break;
+                    }
+                }
+            }
+        }
+        return expected == 0 ? 1f : found / (float) expected;
+    }
+
+    private static float iou(DetectionBuffer a, int i, DetectionBuffer b, int j) {
+        int left = Math.max(a.left(i), b.left(j));
+        int top = Math.max(a.top(i), b.top(j));
+        int right = Math.min(a.right(i), b.right(j));
+        int bottom = Math.min(a.bottom(i), b.bottom(j));
+        if (right <= left || bottom <= top) return 0f;
+        long intersection = (long) (right - left) * (bottom - top);
+        long areaA = (long) (a.right(i) - a.left(i)) * (a.bottom(i) - a.top(i));
+        long areaB = (long) (b.right(j) - b.left(j)) * (b.bottom(j) - b.top(j));
+        return intersection / (float) (areaA + areaB - intersection);
+    }
+}
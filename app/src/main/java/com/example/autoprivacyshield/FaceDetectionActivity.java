@@ -5,10 +5,11 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.RectF;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.MediaStore;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -18,25 +19,26 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
 import com.google.mlkit.vision.face.FaceDetector;
-import com.google.mlkit.vision.face.FaceDetectorOptions;
 
 import java.io.IOException;
-import java.util.List;
 
 public class FaceDetectionActivity extends AppCompatActivity {
+    private static final String TAG = "FaceDetectionActivity";
     private static final int PICK_IMAGE = 1;
     private ImageView imageView;
     private TextView resultText, faceCountText;
     private Button uploadButton;
     private Bitmap selectedBitmap;
+    // Shared client (landmarks + classification), held while the activity is visible
+    private ModelRegistry.Handle<FaceDetector> faceModel;
+    private DetectionCache detectionCache;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_face_detection);
+        detectionCache = DetectionCache.get(this);
 
         imageView = findViewById(R.id.imageView);
         resultText = findViewById(R.id.resultText);
@@ -46,6 +48,18 @@ public class FaceDetectionActivity extends AppCompatActivity {
         uploadButton.setOnClickListener(v -> openGallery());
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        faceModel = ModelRegistry.acquireFaceDetector(this, ModelRegistry.FACE_DETECTOR_ALL);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        faceModel.close();
+    }
+
     private void openGallery() {
         Intent intent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
         startActivityForResult(intent, PICK_IMAGE);
@@ -66,23 +80,51 @@ public class FaceDetectionActivity extends AppCompatActivity {
         }
     }
 
+    // A picture seen before is answered from the detection cache, keyed by its pixels.
+    // Hashing and the lookup run in the background.
     private void detectFaces(Bitmap bitmap) {
-        InputImage image = InputImage.fromBitmap(bitmap, 0);
+        long start = SystemClock.elapsedRealtime();
+        DetectionCache.background().execute(() -> {
+            long cacheKey = DetectionCache.key(DetectionCache.contentHash(bitmap), ModelRegistry.FACE_DETECTOR_ALL);
+            DetectionCache.Entry cached = detectionCache.get(cacheKey);
+            runOnUiThread(() -> {
+                if (cached != null) {
+                    Log.d(TAG, "Face detection served from cache in " + (SystemClock.elapsedRealtime() - start) + " ms");
+                    processFaceResult(cached.results, bitmap);
+                } else {
+                    detectFaces(bitmap, cacheKey, start);
+                }
+            });
+        });
+    }
+
+    private void detectFaces(Bitmap bitmap, long cacheKey, long start) {
+        faceModel.whenReady(this::runOnUiThread, detector -> {
+            if (detector == null) {
+                Toast.makeText(this, "Face detection failed!", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            detectFaces(detector, bitmap, cacheKey, start);
+        });
+    }
 
-        FaceDetectorOptions options = new FaceDetectorOptions.Builder()
-                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
-                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
-                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
-                .build();
-        FaceDetector detector = FaceDetection.getClient(options);
+    private void detectFaces(FaceDetector detector, Bitmap bitmap, long cacheKey, long start) {
+        InputImage image = InputImage.fromBitmap(bitmap, 0);
 
         detector.process(image)
-                .addOnSuccessListener(faces -> processFaceResult(faces, bitmap))
+                .addOnSuccessListener(found -> {
+                    Log.d(TAG, "Face detection completed in " + (SystemClock.elapsedRealtime() - start) + " ms");
+                    DetectionBuffer faces = new DetectionBuffer();
+                    MlKitFaceBackend.addFaces(found, faces);
+                    DetectionCache.background().execute(() ->
+                            detectionCache.put(cacheKey, bitmap.getWidth(), bitmap.getHeight(), faces));
+                    processFaceResult(faces, bitmap);
+                })
                 .addOnFailureListener(e -> Toast.makeText(this, "Face detection failed!", Toast.LENGTH_SHORT).show());
     }
 
-    private void processFaceResult(List<Face> faces, Bitmap originalBitmap) {
-        if (faces.isEmpty()) {
+    private void processFaceResult(DetectionBuffer faces, Bitmap originalBitmap) {
+        if (faces.size() == 0) {
             resultText.setText("No faces detected.");
             faceCountText.setText("Faces detected: 0");
             imageView.setImageBitmap(originalBitmap);
@@ -96,9 +138,8 @@ public class FaceDetectionActivity extends AppCompatActivity {
         paint.setStyle(Paint.Style.FILL);
         paint.setStrokeWidth(5);
 
-        for (Face face : faces) {
-            RectF rect = new RectF(face.getBoundingBox());
-            canvas.drawRect(rect, paint);
+        for (int i = 0; i < faces.size(); i++) {
+            canvas.drawRect(faces.left(i), faces.top(i), faces.right(i), faces.bottom(i), paint);
         }
 
         resultText.setText("Faces detected successfully!");
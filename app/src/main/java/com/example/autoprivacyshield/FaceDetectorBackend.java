@@ -0,0 +1,45 @@
+package com.example.autoprivacyshield;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A face detector used by {@link DetectionUtils}. Backends append face boxes, in bitmap
+ * pixels, to a caller-owned buffer and report completion on the result executor.
+ */
+public interface FaceDetectorBackend extends AutoCloseable {
+    String MLKIT = "mlkit";
+    String BLAZEFACE = "blazeface";
+    String[] NAMES = {MLKIT, BLAZEFACE};
+
+    interface Callback {
+        /** {@code error} is null on success; on failure {@code out} may hold partial boxes. */
+        void onComplete(Exception error);
+    }
+
+    String getName();
+
+    /**
+     * Detects faces in {@code bitmap}, appending them to {@code out} as
+     * {@link DetectionBuffer#TYPE_FACE} entries. While the model is still loading this
+     * completes successfully with no faces.
+     */
+    void detect(Bitmap bitmap, DetectionBuffer out, Executor resultExecutor, Callback callback);
+
+    /** True while the model is loading and {@link #detect} finds no faces. */
+    boolean isLoading();
+
+    /** Waits up to {@code timeoutMs} for the model; false if it is not available. */
+    boolean awaitReady(long timeoutMs);
+
+    @Override
+    void close();
+
+    /** Backend by name; unknown names get ML Kit. */
+    static FaceDetectorBackend create(Context context, String name) {
+        if (BLAZEFACE.equals(name)) return new BlazeFaceBackend(context);
+        return new MlKitFaceBackend(context);
+    }
+}
@@ -8,10 +8,11 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.RectF;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.MediaStore;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -21,29 +22,31 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
 import com.google.mlkit.vision.face.FaceDetector;
-import com.google.mlkit.vision.face.FaceDetectorOptions;
-import com.google.mlkit.vision.text.Text;
-import com.google.mlkit.vision.text.TextRecognition;
-import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
+import com.google.mlkit.vision.text.TextRecognizer;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.regex.Pattern;
 
 public class FaceOcrActivity extends AppCompatActivity {
+    private static final String TAG = "FaceOcrActivity";
     private static final int PICK_IMAGE = 1;
+    // Shown on screen and used for faces; OCR reads full-resolution tiles instead
+    private static final int PREVIEW_MAX_SIDE = 2048;
     private ImageView imageView;
     private TextView resultTextView, faceCountText;
     private Button selectImageBtn, copyTextBtn;
     private Bitmap selectedBitmap;
+    // Shared clients, held while the activity is visible
+    private ModelRegistry.Handle<FaceDetector> faceModel;
+    private ModelRegistry.Handle<TextRecognizer> textModel;
+    private DetectionCache detectionCache;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_face_ocr);
+        detectionCache = DetectionCache.get(this);
 
         imageView = findViewById(R.id.imageView);
         resultTextView = findViewById(R.id.resultText);
@@ -61,6 +64,20 @@ public class FaceOcrActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        faceModel = ModelRegistry.acquireFaceDetector(this);
+        textModel = ModelRegistry.acquireTextRecognizer(this);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        faceModel.close();
+        textModel.close();
+    }
+
     private void openGallery() {
         Intent intent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
         startActivityForResult(intent, PICK_IMAGE);
@@ -72,8 +89,9 @@ public class FaceOcrActivity extends AppCompatActivity {
         if (requestCode == PICK_IMAGE && resultCode == RESULT_OK && data != null) {
             Uri imageUri = data.getData();
             try {
-                selectedBitmap = MediaStore.Images.Media.getBitmap(this.getContentResolver(), imageUri);
-                detectFacesAndText(selectedBitmap);
+                selectedBitmap = BitmapUtils.decodeScaled(getContentResolver(), imageUri, PREVIEW_MAX_SIDE);
+                if (selectedBitmap == null) throw new IOException("Cannot decode " + imageUri);
+                detectFacesAndText(imageUri, selectedBitmap);
             } catch (IOException e) {
                 e.printStackTrace();
                 Toast.makeText(this, "Error loading image", Toast.LENGTH_SHORT).show();
@@ -81,35 +99,84 @@ public class FaceOcrActivity extends AppCompatActivity {
         }
     }
 
-    private void detectFacesAndText(Bitmap bitmap) {
-        InputImage image = InputImage.fromBitmap(bitmap, 0);
-
-        FaceDetectorOptions options = new FaceDetectorOptions.Builder()
-                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
-                .build();
-        FaceDetector detector = FaceDetection.getClient(options);
-
-        com.google.mlkit.vision.text.TextRecognizer recognizer =
-                TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
-
-        detector.process(image)
-                .addOnSuccessListener(faces -> {
-                    recognizer.process(image)
-                            .addOnSuccessListener(visionText -> {
-                                processResults(faces, visionText, bitmap);
-                            })
-                            .addOnFailureListener(e -> {
-                                resultTextView.setText("OCR failed: " + e.getMessage());
-                                Toast.makeText(this, "OCR detection failed", Toast.LENGTH_SHORT).show();
-                            });
-                })
-                .addOnFailureListener(e -> {
-                    resultTextView.setText("Face detection failed: " + e.getMessage());
-                    Toast.makeText(this, "Face detection failed", Toast.LENGTH_SHORT).show();
-                });
+    // Each half of the result is cached on its own: faces by preview pixels, text shared with
+    // OCRActivity. Hashing and cache I/O run in the background.
+    private void detectFacesAndText(Uri imageUri, Bitmap preview) {
+        long start = SystemClock.elapsedRealtime();
+        DetectionCache.background().execute(() -> {
+            long contentHash = DetectionCache.contentHash(preview);
+            long faceKey = DetectionCache.key(contentHash, ModelRegistry.FACE_DETECTOR);
+            DetectionCache.Entry cachedFaces = detectionCache.get(faceKey);
+            runOnUiThread(() -> {
+                if (cachedFaces != null) {
+                    readText(imageUri, preview, cachedFaces.results, contentHash, start);
+                } else {
+                    detectFaces(imageUri, preview, faceKey, contentHash, start);
+                }
+            });
+        });
     }
 
-    private void processResults(List<Face> faces, Text visionText, Bitmap originalBitmap) {
+    private void detectFaces(Uri imageUri, Bitmap preview, long faceKey, long contentHash, long start) {
+        faceModel.whenReady(this::runOnUiThread, detector -> {
+            if (detector == null) {
+                resultTextView.setText("Detection failed: face model unavailable");
+                return;
+            }
+            detector.process(InputImage.fromBitmap(preview, 0))
+                    .addOnSuccessListener(found -> {
+                        DetectionBuffer faces = new DetectionBuffer();
+                        MlKitFaceBackend.addFaces(found, faces);
+                        DetectionCache.background().execute(() ->
+                                detectionCache.put(faceKey, preview.getWidth(), preview.getHeight(), faces));
+                        readText(imageUri, preview, faces, contentHash, start);
+                    })
+                    .addOnFailureListener(e -> {
+                        resultTextView.setText("Face detection failed: " + e.getMessage());
+                        Toast.makeText(this, "Face detection failed", Toast.LENGTH_SHORT).show();
+                    });
+        });
+    }
+
+    // Faces are found on the preview; text is read from full-resolution tiles of the image
+    private void readText(Uri imageUri, Bitmap preview, DetectionBuffer faces, long contentHash, long start) {
+        long textKey = DetectionCache.key(contentHash, TiledTextRecognizer.CACHE_CONFIG);
+        DetectionCache.background().execute(() -> {
+            DetectionCache.Entry cachedText = detectionCache.get(textKey);
+            runOnUiThread(() -> {
+                if (cachedText != null) {
+                    Log.d(TAG, "Faces + OCR completed in " + (SystemClock.elapsedRealtime() - start) + " ms (text cached)");
+                    processResults(faces, TiledTextRecognizer.Result.fromCache(cachedText), preview);
+                } else {
+                    recognizeText(imageUri, preview, faces, textKey, start);
+                }
+            });
+        });
+    }
+
+    private void recognizeText(Uri imageUri, Bitmap preview, DetectionBuffer faces, long textKey, long start) {
+        textModel.whenReady(this::runOnUiThread, recognizer -> {
+            if (recognizer == null) {
+                resultTextView.setText("Detection failed: text model unavailable");
+                return;
+            }
+            TiledTextRecognizer.recognize(getContentResolver(), imageUri, recognizer, this::runOnUiThread,
+                    (ocr, error) -> {
+                        if (ocr == null) {
+                            resultTextView.setText("OCR failed: " + error.getMessage());
+                            Toast.makeText(this, "OCR detection failed", Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        Log.d(TAG, "Faces + OCR completed in " + (SystemClock.elapsedRealtime() - start)
+                                + " ms (" + ocr.tiles + " tiles)");
+                        DetectionCache.background().execute(() -> ocr.cache(detectionCache, textKey));
+                        processResults(faces, ocr, preview);
+                    });
+        });
+    }
+
+    // Face boxes are in preview pixels, text line boxes in full-resolution pixels
+    private void processResults(DetectionBuffer faces, TiledTextRecognizer.Result ocr, Bitmap originalBitmap) {
         Bitmap mutableBitmap = originalBitmap.copy(Bitmap.Config.ARGB_8888, true);
         Canvas canvas = new Canvas(mutableBitmap);
         Paint paint = new Paint();
@@ -121,32 +188,27 @@ public class FaceOcrActivity extends AppCompatActivity {
         sb.append("=== DETECTION RESULTS ===\n");
         sb.append("Faces detected: ").append(faces.size()).append("\n\n");
 
-        for (Face face : faces) {
-            RectF rect = new RectF(face.getBoundingBox());
-            canvas.drawRect(rect, paint);
+        for (int i = 0; i < faces.size(); i++) {
+            canvas.drawRect(faces.left(i), faces.top(i), faces.right(i), faces.bottom(i), paint);
         }
 
         paint.setColor(Color.BLUE);
 
         sb.append("=== TEXT ANALYSIS ===\n");
-        List<Text.TextBlock> blocks = visionText.getTextBlocks();
-        if (blocks.isEmpty()) {
+        // Line boxes are in full-resolution pixels
+        float scale = originalBitmap.getWidth() / (float) ocr.width;
+        if (ocr.lines.isEmpty()) {
             sb.append("No text detected\n");
         } else {
-            for (Text.TextBlock block : blocks) {
-                String blockText = block.getText();
-                if (blockText != null && !blockText.trim().isEmpty()) {
-                    if (block.getBoundingBox() != null) {
-                        RectF textRect = new RectF(block.getBoundingBox());
-                        canvas.drawRect(textRect, paint);
-                    }
-                    sb.append(maskSensitiveData(blockText.trim())).append("\n");
-                }
+            for (TiledTextRecognizer.Line line : ocr.lines) {
+                canvas.drawRect(line.box.left * scale, line.box.top * scale,
+                        line.box.right * scale, line.box.bottom * scale, paint);
+                sb.append(maskSensitiveData(line.text)).append("\n");
             }
         }
 
         resultTextView.setText(sb.toString());
-        faceCountText.setText("Faces: " + faces.size() + " | Text blocks: " + blocks.size());
+        faceCountText.setText("Faces: " + faces.size() + " | Text lines: " + ocr.lines.size());
         imageView.setImageBitmap(mutableBitmap);
     }
 
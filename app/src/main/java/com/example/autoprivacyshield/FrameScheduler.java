@@ -0,0 +1,213 @@
+package com.example.autoprivacyshield;
+
+import android.os.SystemClock;
+
+/**
+ * Latest-frame-wins scheduler for the capture pipeline.
+ *
+ * At most {@code maxInFlight} frames are processed at once. While all slots are
+ * busy a single pending slot holds the newest frame; an older pending frame is
+ * superseded and handed back through {@link Worker#onDiscarded}. Results that
+ * complete after {@code deadlineMs}, or after a newer frame's result was already
+ * delivered, are reported as stale so the caller can drop them.
+ */
+public class FrameScheduler<T> implements CadenceGovernor.LatencySource {
+
+    public interface Worker<T> {
+        /** Starts processing; must eventually call {@link FrameScheduler#complete(Job)}, or deliver and release. */
+        void process(Job<T> job);
+
+        /** The frame will never be processed (superseded or stale); release it. */
+        void onDiscarded(T frame);
+    }
+
+    public interface Clock {
+        long nowMillis();
+    }
+
+    public static final Clock UPTIME_CLOCK = SystemClock::uptimeMillis;
+
+    public static final class Job<T> {
+        public final T frame;
+        public final long sequence;
+        public final long submittedAtMs;
+        long startedAtMs;
+
+        Job(T frame, long sequence, long submittedAtMs) {
+            this.frame = frame;
+            this.sequence = sequence;
+            this.submittedAtMs = submittedAtMs;
+        }
+    }
+
+    private final int maxInFlight;
+    private final long deadlineMs;
+    private final Worker<T> worker;
+    private final Clock clock;
+
+    private Job<T> pending;
+    private int inFlight;
+    private long nextSequence;
+    private long lastDeliveredSequence = -1;
+
+    // ===== Counters =====
+    private long submitted;
+    private long started;
+    private long delivered;
+    private long superseded;
+    private long dropped;
+    private long completedJobs;
+    private long lastLatencyMs;
+    private long totalLatencyMs;
+
+    public FrameScheduler(int maxInFlight, long deadlineMs, Worker<T> worker) {
+        this(maxInFlight, deadlineMs, worker, UPTIME_CLOCK);
+    }
+
+    public FrameScheduler(int maxInFlight, long deadlineMs, Worker<T> worker, Clock clock) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be >= 1");
+        this.maxInFlight = maxInFlight;
+        this.deadlineMs = deadlineMs;
+        this.worker = worker;
+        this.clock = clock;
+    }
+
+    /** Offers a new frame; starts it now if a slot is free, otherwise it replaces the pending frame. */
+    public void submit(T frame) {
+        Job<T> toStart = null;
+        T toDiscard = null;
+
+        synchronized (this) {
+            submitted++;
+            Job<T> job = new Job<>(frame, nextSequence++, clock.nowMillis());
+            if (inFlight < maxInFlight) {
+                inFlight++;
+                started++;
+                job.startedAtMs = job.submittedAtMs;
+                toStart = job;
+            } else {
+                if (pending != null) {
+                    toDiscard = pending.frame;
+                    superseded++;
+                }
+                pending = job;
+            }
+        }
+
+        if (toDiscard != null) worker.onDiscarded(toDiscard);
+        if (toStart != null) worker.process(toStart);
+    }
+
+    /**
+     * Marks a job finished and starts the pending frame, if any.
+     * Equivalent to {@link #deliver} followed by {@link #release}.
+     *
+     * @return true if the result is still fresh and should be used, false if it must be dropped
+     */
+    public boolean complete(Job<T> job) {
+        boolean fresh = deliver(job);
+        release(job);
+        return fresh;
+    }
+
+    /**
+     * Records that the job's result is ready. The job keeps its slot until {@link #release},
+     * e.g. while a timed-out detector still reads the frame.
+     *
+     * @return true if the result is still fresh and should be used, false if it must be dropped
+     */
+    public synchronized boolean deliver(Job<T> job) {
+        long now = clock.nowMillis();
+        completedJobs++;
+        lastLatencyMs = now - job.startedAtMs;
+        totalLatencyMs += lastLatencyMs;
+        boolean fresh = now - job.submittedAtMs <= deadlineMs && job.sequence > lastDeliveredSequence;
+        if (fresh) {
+            lastDeliveredSequence = job.sequence;
+            delivered++;
+        } else {
+            dropped++;
+        }
+        return fresh;
+    }
+
+    /** Frees the job's slot and starts the pending frame, if any. */
+    public void release(Job<T> job) {
+        Job<T> toStart = null;
+        T toDiscard = null;
+
+        synchronized (this) {
+            inFlight--;
+            if (pending != null) {
+                long now = clock.nowMillis();
+                Job<T> next = pending;
+                pending = null;
+                if (now - next.submittedAtMs > deadlineMs) {
+                    toDiscard = next.frame;
+                    dropped++;
+                } else {
+                    inFlight++;
+                    started++;
+                    next.startedAtMs = now;
+                    toStart = next;
+                }
+            }
+        }
+
+        if (toDiscard != null) worker.onDiscarded(toDiscard);
+        if (toStart != null) worker.process(toStart);
+    }
+
+    /** Drops the pending frame, e.g. when capture stops. */
+    public void cancelPending() {
+        T toDiscard = null;
+        synchronized (this) {
+            if (pending != null) {
+                toDiscard = pending.frame;
+                pending = null;
+            }
+        }
+        if (toDiscard != null) worker.onDiscarded(toDiscard);
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public synchronized int getQueueDepth() {
+        return inFlight + (pending != null ? 1 : 0);
+    }
+
+    public synchronized long getSubmittedCount() {
+        return submitted;
+    }
+
+    public synchronized long getSupersededCount() {
+        return superseded;
+    }
+
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public synchronized long getDeliveredCount() {
+        return delivered;
+    }
+
+    /** Processing time (start to complete) of the most recently completed job. */
+    @Override
+    public synchronized long getLastLatencyMs() {
+        return lastLatencyMs;
+    }
+
+    public synchronized String describeStats() {
+        return "submitted=" + submitted
+                + " started=" + started
+                + " delivered=" + delivered
+                + " superseded=" + superseded
+                + " dropped=" + dropped
+                + " inFlight=" + inFlight
+                + " avgLatencyMs=" + (completedJobs == 0 ? 0 : totalLatencyMs / completedJobs);
+    }
+}
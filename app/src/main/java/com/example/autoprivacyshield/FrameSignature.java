@@ -0,0 +1,105 @@
+package com.example.autoprivacyshield;
+
+import android.graphics.Bitmap;
+
+import java.util.Arrays;
+
+/**
+ * Per-frame fingerprint: the frame is split into square tiles and every pixel of a
+ * tile is folded into that tile's hash. Since 31 is odd, changing any single pixel
+ * always changes its tile's hash, however thin the change (one new digit of an OTP).
+ * Two frames with equal signatures are treated as unchanged.
+ *
+ * Capture frames are signed row by row while they are converted ({@link #begin},
+ * {@link #addRow}), so the frame is only read once; bitmaps can be signed directly.
+ */
+public class FrameSignature {
+    public static final int TILE_SIZE = 64;
+
+    private int width;
+    private int height;
+    private int columns;
+    private int rows;
+    private int[] tileHashes = new int[0];
+    private int[] rowPixels = new int[0];
+
+    /** Starts a signature of a width x height frame; every row must then be added once. */
+    public void begin(int width, int height) {
+        resize(width, height);
+        Arrays.fill(tileHashes, 1);
+    }
+
+    /** Folds row {@code y}, {@code width} ARGB pixels, into the tile hashes. */
+    public void addRow(int y, int[] pixels) {
+        int tile = (y / TILE_SIZE) * columns;
+        for (int x = 0; x < width; tile++) {
+            int end = Math.min(width, x + TILE_SIZE);
+            int hash = tileHashes[tile];
+            for (; x < end; x++) {
+                hash = 31 * hash + pixels[x];
+            }
+            tileHashes[tile] = hash;
+        }
+    }
+
+    public void compute(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        begin(width, height);
+        if (rowPixels.length < width) rowPixels = new int[width];
+
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(rowPixels, 0, width, 0, y, width, 1);
+            addRow(y, rowPixels);
+        }
+    }
+
+    /** True if both signatures cover the same geometry and every tile hash matches. */
+    public boolean sameAs(FrameSignature other) {
+        return hasSameGeometry(other) && Arrays.equals(other.tileHashes, tileHashes);
+    }
+
+    public boolean hasSameGeometry(FrameSignature other) {
+        return other != null && other.width == width && other.height == height;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /** Requires {@link #hasSameGeometry}. */
+    public boolean isTileChanged(FrameSignature previous, int column, int row) {
+        int index = row * columns + column;
+        return tileHashes[index] != previous.tileHashes[index];
+    }
+
+    /** Requires {@link #hasSameGeometry}; true if any tile overlapping the pixel box changed. */
+    public boolean isAreaChanged(FrameSignature previous, int left, int top, int right, int bottom) {
+        int lastColumn = Math.min(columns, (Math.min(width, right) + TILE_SIZE - 1) / TILE_SIZE);
+        int lastRow = Math.min(rows, (Math.min(height, bottom) + TILE_SIZE - 1) / TILE_SIZE);
+        for (int row = Math.max(0, top) / TILE_SIZE; row < lastRow; row++) {
+            for (int column = Math.max(0, left) / TILE_SIZE; column < lastColumn; column++) {
+                if (isTileChanged(previous, column, row)) return true;
+            }
+        }
+        return false;
+    }
+
+    public void copyFrom(FrameSignature other) {
+        resize(other.width, other.height);
+        System.arraycopy(other.tileHashes, 0, tileHashes, 0, tileHashes.length);
+    }
+
+    private void resize(int width, int height) {
+        if (width == this.width && height == this.height) return;
+        this.width = width;
+        this.height = height;
+        columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        tileHashes = new int[columns * rows];
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.autoprivacyshield;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import java.util.Locale;
+
+/**
+ * Runs a {@link GalleryScanner} in the foreground and broadcasts its progress. The service
+ * is sticky: if the process dies mid-scan it is restarted and the scan resumes from its
+ * checkpoint.
+ */
+public class GalleryScanService extends Service {
+    private static final String TAG = "GalleryScanService";
+    private static final String CHANNEL_ID = "GalleryScanChannel";
+    private static final int NOTIFICATION_ID = 2;
+
+    public static final String ACTION_START = "com.example.autoprivacyshield.START_GALLERY_SCAN";
+    public static final String ACTION_STOP = "com.example.autoprivacyshield.STOP_GALLERY_SCAN";
+
+    // Local broadcast with the scan's progress, about once a second and when it ends
+    public static final String ACTION_SCAN_PROGRESS = "com.example.autoprivacyshield.GALLERY_SCAN_PROGRESS";
+    public static final String EXTRA_SCANNED = "scanned";
+    public static final String EXTRA_TOTAL = "total";
+    public static final String EXTRA_FLAGGED = "flagged";
+    public static final String EXTRA_UNSCANNED = "unscanned";
+    public static final String EXTRA_IMAGES_PER_SECOND = "imagesPerSecond";
+    public static final String EXTRA_ENDED = "ended";
+    public static final String EXTRA_COMPLETE = "complete";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private GalleryScanner scanner;  // main thread only
+
+    /** Starts a gallery scan, resuming a stopped one. Needs read access to images. */
+    public static void start(Context context) {
+        context.startForegroundService(new Intent(context, GalleryScanService.class).setAction(ACTION_START));
+    }
+
+    /** Stops a running scan; images being scanned finish first and the position is kept. */
+    public static void stop(Context context) {
+        context.startService(new Intent(context, GalleryScanService.class).setAction(ACTION_STOP));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        createNotificationChannel();
+        startForeground(NOTIFICATION_ID, buildNotification("Preparing gallery scan", 0, 0));
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            if (scanner != null) {
+                scanner.stop();
+            } else {
+                stopSelf();
+            }
+            return START_NOT_STICKY;
+        }
+
+        // A null intent is a restart after the process died; only resume an unfinished scan
+        if (intent == null && !GalleryScanner.isResumePending(this)) {
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        if (scanner == null) {
+            scanner = new GalleryScanner(this, progress -> mainHandler.post(() -> onProgress(progress)));
+            scanner.start();
+        }
+        return START_STICKY;
+    }
+
+    private void onProgress(GalleryScanner.Progress progress) {
+        String text = progress.ended
+                ? String.format(Locale.US, "Scan %s: %d flagged of %d images, %d unscanned",
+                        progress.complete ? "complete" : "stopped", progress.flagged, progress.scanned,
+                        progress.unscanned)
+                : String.format(Locale.US, "%d/%d images, %d flagged, %d unscanned, %.1f images/s",
+                        progress.scanned, progress.total, progress.flagged, progress.unscanned,
+                        progress.imagesPerSecond);
+
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null && !progress.ended) {
+            manager.notify(NOTIFICATION_ID, buildNotification(text, progress.total, progress.scanned));
+        }
+
+        Intent intent = new Intent(ACTION_SCAN_PROGRESS);
+        intent.putExtra(EXTRA_SCANNED, progress.scanned);
+        intent.putExtra(EXTRA_TOTAL, progress.total);
+        intent.putExtra(EXTRA_FLAGGED, progress.flagged);
+        intent.putExtra(EXTRA_UNSCANNED, progress.unscanned);
+        intent.putExtra(EXTRA_IMAGES_PER_SECOND, progress.imagesPerSecond);
+        intent.putExtra(EXTRA_ENDED, progress.ended);
+        intent.putExtra(EXTRA_COMPLETE, progress.complete);
+        LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
+
+        if (progress.ended) {
+            Log.d(TAG, text);
+            scanner = null;
+            stopForeground(STOP_FOREGROUND_REMOVE);
+            stopSelf();
+        }
+    }
+
+    private Notification buildNotification(String text, int max, int current) {
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("Gallery privacy scan")
+                .setContentText(text)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setProgress(max, current, max == 0)
+                .setOnlyAlertOnce(true)
+                .setOngoing(true)
+                .build();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (scanner != null) scanner.stop();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                    CHANNEL_ID,
+                    "Gallery Scan",
+                    NotificationManager.IMPORTANCE_LOW
+            );
+            channel.setDescription("Progress of the gallery privacy scan");
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            if (manager != null) {
+                manager.createNotificationChannel(channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.autoprivacyshield;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans every image in MediaStore for sensitive content: ID documents, card and phone
+ * numbers and the other OCR types, and sensitive objects. Faces alone do not flag an image.
+ *
+ * A fixed set of workers each decode an image scaled down to {@link #DECODE_MAX_SIDE} and
+ * run it through their own still-image {@link DetectionUtils}. An image is only handed out
+ * when a worker is free, so at most one decoded image per worker is alive at a time.
+ *
+ * Images are scanned in MediaStore id order and the position is checkpointed after each
+ * one, so a scan cut short by process death or {@link #stop} resumes where it left off.
+ * Flagged images are appended to {@link #FINDINGS_FILE} as "id&lt;TAB&gt;types" lines.
+ * Images that could not be checked fully (undecodable, or a detector failed or timed out
+ * without finding anything) are recorded as "id&lt;TAB&gt;{@value #UNSCANNED}" instead of
+ * passing as clean, and counted in {@link Progress#unscanned}.
+ */
+public class GalleryScanner {
+    private static final String TAG = "GalleryScanner";
+    private static final String PREFS_NAME = "gallery_scan";
+    private static final String KEY_RUNNING = "running";
+    private static final String KEY_RESUME_AFTER = "resumeAfter";
+    private static final String KEY_DONE_AHEAD = "doneAhead";
+    private static final String KEY_SCANNED = "scanned";
+    private static final String KEY_FLAGGED = "flagged";
+    private static final String KEY_UNSCANNED = "unscanned";
+    public static final String FINDINGS_FILE = "gallery_scan_findings.tsv";
+    /** Findings-file entry of an image that could not be checked fully. */
+    public static final String UNSCANNED = "unscanned";
+
+    // Enough for card numbers and ID card text in a photo of the card
+    private static final int DECODE_MAX_SIDE = 1600;
+    private static final int MAX_WORKERS = 3;
+    private static final long MODEL_TIMEOUT_MS = 30_000;
+    // Detectors time out on their own; this only guards against a lost callback
+    private static final long IMAGE_TIMEOUT_MS = 30_000;
+    private static final long PROGRESS_INTERVAL_MS = 1_000;
+    private static final String CACHE_CONFIG_PREFIX = "gallery-scan/";
+
+    /** A snapshot of the scan; counts include images scanned before a resume. */
+    public static final class Progress {
+        public final int scanned;
+        public final int total;
+        public final int flagged;
+        /** Images counted in {@link #scanned} that could not be checked fully. */
+        public final int unscanned;
+        public final float imagesPerSecond;
+        /** The scan has stopped, finished or not. */
+        public final boolean ended;
+        /** Every image has been scanned; the checkpoint is cleared. */
+        public final boolean complete;
+
+        Progress(int scanned, int total, int flagged, int unscanned, float imagesPerSecond,
+                 boolean ended, boolean complete) {
+            this.scanned = scanned;
+            this.total = total;
+            this.flagged = flagged;
+            this.unscanned = unscanned;
+            this.imagesPerSecond = imagesPerSecond;
+            this.ended = ended;
+            this.complete = complete;
+        }
+    }
+
+    public interface ProgressListener {
+        /** Called on a scan thread at most once per second, and once when the scan ends. */
+        void onProgress(Progress progress);
+    }
+
+    private static final class Worker {
+        final PipelineStage stage;
+        final DetectionUtils detector;
+
+        Worker(Context context, int index) {
+            stage = new PipelineStage("scan-" + index, 1, Process.THREAD_PRIORITY_BACKGROUND);
+            detector = DetectionUtils.forStillImages(context);
+        }
+    }
+
+    private final Context appContext;
+    private final ProgressListener listener;
+    private final SharedPreferences prefs;
+    private final DetectionCache detectionCache;
+    private final int workerCount;
+    private volatile boolean stopped;
+
+    // Checkpoint state, guarded by this. Ids up to resumeAfter are done, as are those in
+    // doneAhead; the ones in inFlight are being scanned.
+    private long resumeAfter;
+    private long lastDispatched;
+    private final TreeSet<Long> doneAhead = new TreeSet<>();
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private int scanned;
+    private int flagged;
+    private int unscanned;
+    private int total;
+    private int scannedThisRun;
+    private long startedAtMs;
+    private long lastReportMs;
+
+    public GalleryScanner(Context context, ProgressListener listener) {
+        appContext = context.getApplicationContext();
+        this.listener = listener;
+        prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        detectionCache = DetectionCache.get(appContext);
+        workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /** True if a scan was running when the process last died and has not finished. */
+    public static boolean isResumePending(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getBoolean(KEY_RUNNING, false);
+    }
+
+    /** Starts scanning in the background, from the checkpoint if there is one. */
+    public void start() {
+        new Thread(this::scan, "APS-gallery-scan").start();
+    }
+
+    /** Stops handing out images; those being scanned finish and the checkpoint is kept. */
+    public void stop() {
+        stopped = true;
+    }
+
+    // ===== Scan loop =====
+
+    private void scan() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        boolean resuming = prefs.contains(KEY_RESUME_AFTER);
+        synchronized (this) {
+            resumeAfter = prefs.getLong(KEY_RESUME_AFTER, -1);
+            lastDispatched = resumeAfter;
+            doneAhead.addAll(parseIds(prefs.getString(KEY_DONE_AHEAD, "")));
+            scanned = prefs.getInt(KEY_SCANNED, 0);
+            flagged = prefs.getInt(KEY_FLAGGED, 0);
+            unscanned = prefs.getInt(KEY_UNSCANNED, 0);
+        }
+        if (!resuming) findingsFile().delete();
+        prefs.edit().putBoolean(KEY_RUNNING, true).apply();
+        Log.d(TAG, (resuming ? "Resuming after id " + resumeAfter : "Starting") + " with " + workerCount + " workers");
+
+        BlockingQueue<Worker> idle = new ArrayBlockingQueue<>(workerCount);
+        List<Worker> workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            Worker worker = new Worker(appContext, i);
+            workers.add(worker);
+            idle.add(worker);
+        }
+
+        boolean complete = false;
+        try {
+            if (!workers.get(0).detector.awaitModels(MODEL_TIMEOUT_MS)) {
+                // Scanning without them would report images as clean
+                Log.e(TAG, "Detection models unavailable; scan not started");
+                return;
+            }
+            complete = dispatchAll(idle);
+            // Wait for the images still being scanned
+            for (int i = 0; i < workerCount; i++) {
+                idle.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete = false;
+        } finally {
+            for (Worker worker : workers) {
+                worker.stage.quit();
+                worker.detector.cleanup();
+            }
+            finish(complete);
+        }
+    }
+
+    /** Hands every image after the checkpoint to a free worker; false if stopped early. */
+    private boolean dispatchAll(BlockingQueue<Worker> idle) throws InterruptedException {
+        ContentResolver resolver = appContext.getContentResolver();
+        try (Cursor cursor = resolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                new String[]{MediaStore.Images.Media._ID},
+                MediaStore.Images.Media._ID + " > ?", new String[]{String.valueOf(resumeAfter)},
+                MediaStore.Images.Media._ID + " ASC")) {
+            if (cursor == null) {
+                Log.e(TAG, "MediaStore query failed");
+                return false;
+            }
+
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
+            synchronized (this) {
+                total = scanned + cursor.getCount() - doneAhead.size();
+                startedAtMs = SystemClock.elapsedRealtime();
+            }
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(idColumn);
+                Worker worker = idle.take();
+                if (stopped) {
+                    idle.add(worker);
+                    return false;
+                }
+                synchronized (this) {
+                    lastDispatched = id;
+                    // Scanned before the process died, past the checkpoint
+                    if (doneAhead.contains(id)) {
+                        idle.add(worker);
+                        continue;
+                    }
+                    inFlight.add(id);
+                }
+                worker.stage.execute(() -> {
+                    scanImage(worker.detector, id);
+                    idle.add(worker);
+                });
+            }
+        }
+        return !stopped;
+    }
+
+    // ===== Per image (worker threads) =====
+
+    private void scanImage(DetectionUtils detector, long id) {
+        Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+        String types = UNSCANNED;
+        try {
+            Bitmap bitmap = BitmapUtils.decodeScaled(appContext.getContentResolver(), uri, DECODE_MAX_SIDE);
+            if (bitmap == null) {
+                Log.w(TAG, "Could not decode " + uri);
+            } else {
+                types = detect(detector, bitmap);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not scan " + uri, e);
+        }
+        if (types == UNSCANNED) {
+            Log.w(TAG, "Not fully scanned: " + uri);
+        } else if (types != null) {
+            Log.d(TAG, "Flagged " + uri + ": " + types);
+        }
+        imageDone(id, types);
+    }
+
+    /**
+     * Blocks until the detectors finish; returns the sensitive types found, null if the
+     * image is clean, or {@link #UNSCANNED} if a detector failed or timed out and the
+     * others found nothing. An image scanned before with the same detectors is answered
+     * from the detection cache.
+     */
+    private String detect(DetectionUtils detector, Bitmap bitmap) {
+        long cacheKey = DetectionCache.key(DetectionCache.contentHash(bitmap),
+                CACHE_CONFIG_PREFIX + DECODE_MAX_SIDE + "/" + detector.getConfig());
+        DetectionCache.Entry cached = detectionCache.get(cacheKey);
+        if (cached != null) return sensitiveTypes(cached.results);
+
+        CountDownLatch done = new CountDownLatch(1);
+        String[] types = new String[1];
+        detector.detectSensitiveRegions(bitmap, Runnable::run, results -> {
+            String found = sensitiveTypes(results);
+            // Partial results would hide what a failed detector missed on every later scan
+            if (detector.isLastResultComplete()) {
+                detectionCache.put(cacheKey, bitmap.getWidth(), bitmap.getHeight(), results);
+            } else if (found == null) {
+                found = UNSCANNED;
+            }
+            types[0] = found;
+            done.countDown();
+        });
+        // Not recycled: a detector that timed out may still be reading it
+        try {
+            if (done.await(IMAGE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) return types[0];
+            Log.w(TAG, "Detection did not finish");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return UNSCANNED;
+    }
+
+    private static String sensitiveTypes(DetectionBuffer results) {
+        Set<String> types = new LinkedHashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.isSensitive(i) || results.type(i) == DetectionBuffer.TYPE_FACE) continue;
+            types.add(results.type(i) == DetectionBuffer.TYPE_OBJECT ? results.text(i) : results.typeName(i));
+        }
+        return types.isEmpty() ? null : String.join(",", types);
+    }
+
+    // ===== Checkpoint =====
+
+    private void imageDone(long id, String types) {
+        Progress progress = null;
+        synchronized (this) {
+            if (types != null) appendFinding(id, types);
+            if (types == UNSCANNED) {
+                unscanned++;
+            } else if (types != null) {
+                flagged++;
+            }
+
+            inFlight.remove(id);
+            doneAhead.add(id);
+            // Everything before the oldest image still being scanned is done
+            resumeAfter = inFlight.isEmpty() ? lastDispatched : inFlight.first() - 1;
+            doneAhead.headSet(resumeAfter, true).clear();
+            scanned++;
+            scannedThisRun++;
+
+            prefs.edit()
+                    .putLong(KEY_RESUME_AFTER, resumeAfter)
+                    .putString(KEY_DONE_AHEAD, joinIds(doneAhead))
+                    .putInt(KEY_SCANNED, scanned)
+                    .putInt(KEY_FLAGGED, flagged)
+                    .putInt(KEY_UNSCANNED, unscanned)
+                    .apply();
+
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastReportMs >= PROGRESS_INTERVAL_MS) {
+                lastReportMs = now;
+                progress = snapshot(false, false);
+            }
+        }
+        if (progress != null) listener.onProgress(progress);
+    }
+
+    private void finish(boolean complete) {
+        Progress progress;
+        synchronized (this) {
+            progress = snapshot(true, complete);
+        }
+        if (complete) {
+            prefs.edit().clear().apply();
+        } else {
+            // Ended in-process: resume on the next start, not on a service restart
+            prefs.edit().putBoolean(KEY_RUNNING, false).apply();
+        }
+        Log.d(TAG, String.format(Locale.US, "Scan %s: %d/%d scanned, %d flagged, %d unscanned, %.1f images/s",
+                complete ? "complete" : "stopped", progress.scanned, progress.total, progress.flagged,
+                progress.unscanned, progress.imagesPerSecond));
+        listener.onProgress(progress);
+    }
+
+    // Caller holds the lock
+    private Progress snapshot(boolean ended, boolean complete) {
+        long elapsedMs = SystemClock.elapsedRealtime() - startedAtMs;
+        float perSecond = startedAtMs == 0 || elapsedMs <= 0 ? 0f : scannedThisRun * 1000f / elapsedMs;
+        return new Progress(scanned, Math.max(total, scanned), flagged, unscanned, perSecond, ended, complete);
+    }
+
+    // Caller holds the lock, so lines are never interleaved
+    private void appendFinding(long id, String types) {
+        try (OutputStream out = new FileOutputStream(findingsFile(), true)) {
+            out.write((id + "\t" + types + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.w(TAG, "Could not record finding for " + id, e);
+        }
+    }
+
+    private File findingsFile() {
+        return new File(appContext.getFilesDir(), FINDINGS_FILE);
+    }
+
+    private static Set<Long> parseIds(String joined) {
+        Set<Long> ids = new TreeSet<>();
+        for (String id : joined.split(",")) {
+            if (!id.isEmpty()) ids.add(Long.parseLong(id));
+        }
+        return ids;
+    }
+
+    private static String joinIds(Set<Long> ids) {
+        StringBuilder joined = new StringBuilder();
+        for (long id : ids) {
+            if (joined.length() > 0) joined.append(',');
+            joined.append(id);
+        }
+        return joined.toString();
+    }
+}
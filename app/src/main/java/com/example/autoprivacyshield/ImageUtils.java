@@ -3,32 +3,93 @@ package com.example.autoprivacyshield;
 import android.graphics.Bitmap;
 import android.graphics.ImageFormat;
 import android.graphics.PixelFormat;
-import android.graphics.Bitmap.Config;
 import android.media.Image;
 
+import androidx.annotation.Nullable;
+
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 
 public class ImageUtils {
 
-    public static Bitmap imageToBitmap(Image image) {
-        if (image.getFormat() == PixelFormat.RGBA_8888 || image.getFormat() == ImageFormat.YUV_420_888) {
+    /**
+     * Converts an RGBA_8888 or YUV_420_888 frame into {@code dst}, a mutable ARGB_8888 bitmap of
+     * the image's size. Each visible row is read from the plane into {@code row} and written
+     * straight into the bitmap, so plane row padding never reaches it and no frame-sized
+     * intermediate buffer is touched.
+     *
+     * @param row       reused buffer from {@link #ensureRow}
+     * @param signature if not null, signed with every converted row while it is in cache
+     * @return false if the image format is not supported
+     */
+    public static boolean imageToBitmap(Image image, Bitmap dst, int[] row, @Nullable FrameSignature signature) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (signature != null) signature.begin(width, height);
+
+        if (image.getFormat() == PixelFormat.RGBA_8888) {
+            Image.Plane plane = image.getPlanes()[0];
+            ByteBuffer bytes = plane.getBuffer().duplicate();
+            bytes.rewind();
+            // R, G, B, A bytes read little-endian give 0xAABBGGRR
+            IntBuffer pixels = bytes.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            int rowStride = plane.getRowStride() / 4;
+            for (int y = 0; y < height; y++) {
+                pixels.position(y * rowStride);
+                pixels.get(row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    int abgr = row[x];
+                    row[x] = 0xFF000000 | (abgr & 0x0000FF00) | ((abgr & 0xFF) << 16) | ((abgr >> 16) & 0xFF);
+                }
+                if (signature != null) signature.addRow(y, row);
+                dst.setPixels(row, 0, width, 0, y, width, 1);
+            }
+            return true;
+        }
+
+        if (image.getFormat() == ImageFormat.YUV_420_888) {
             Image.Plane[] planes = image.getPlanes();
-            ByteBuffer buffer = planes[0].getBuffer();
-            int pixelStride = planes[0].getPixelStride();
-            int rowStride = planes[0].getRowStride();
-            int rowPadding = rowStride - pixelStride * image.getWidth();
-
-            Bitmap bitmap = Bitmap.createBitmap(
-                    image.getWidth() + rowPadding / pixelStride,
-                    image.getHeight(),
-                    Config.ARGB_8888);
-            bitmap.copyPixelsFromBuffer(buffer);
-
-            // Crop the bitmap to original size
-            Bitmap croppedBitmap = Bitmap.createBitmap(bitmap, 0, 0, image.getWidth(), image.getHeight());
-            bitmap.recycle();
-            return croppedBitmap;
+            for (int y = 0; y < height; y++) {
+                yuvRowToArgb(planes, y, width, row);
+                if (signature != null) signature.addRow(y, row);
+                dst.setPixels(row, 0, width, 0, y, width, 1);
+            }
+            return true;
         }
-        return null;
+        return false;
+    }
+
+    /** Returns {@code current} if it can hold a row of {@code width} pixels, else a new array. */
+    public static int[] ensureRow(int[] current, int width) {
+        return current != null && current.length >= width ? current : new int[width];
+    }
+
+    // BT.601 limited range, 10-bit fixed point
+    private static void yuvRowToArgb(Image.Plane[] planes, int y, int width, int[] out) {
+        ByteBuffer yBuffer = planes[0].getBuffer();
+        ByteBuffer uBuffer = planes[1].getBuffer();
+        ByteBuffer vBuffer = planes[2].getBuffer();
+        int yPixelStride = planes[0].getPixelStride();
+        int uPixelStride = planes[1].getPixelStride();
+        int vPixelStride = planes[2].getPixelStride();
+        int yRow = y * planes[0].getRowStride();
+        int uRow = (y >> 1) * planes[1].getRowStride();
+        int vRow = (y >> 1) * planes[2].getRowStride();
+
+        for (int x = 0; x < width; x++) {
+            int luma = Math.max(0, (yBuffer.get(yRow + x * yPixelStride) & 0xFF) - 16) * 1192;
+            int u = (uBuffer.get(uRow + (x >> 1) * uPixelStride) & 0xFF) - 128;
+            int v = (vBuffer.get(vRow + (x >> 1) * vPixelStride) & 0xFF) - 128;
+
+            int r = clamp((luma + 1634 * v) >> 10);
+            int g = clamp((luma - 833 * v - 400 * u) >> 10);
+            int b = clamp((luma + 2066 * u) >> 10);
+            out[x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
     }
 }
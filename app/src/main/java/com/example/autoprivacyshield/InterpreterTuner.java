@@ -0,0 +1,301 @@
+package com.example.autoprivacyshield;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Picks CPU interpreter options for a model by timing a few configurations on a
+ * synthetic input: thread count first, then XNNPACK and fp16-relaxed precision on the
+ * best thread count. The winner is stored per model hash and device build, so later
+ * starts reuse it without benchmarking.
+ *
+ * Benchmarking builds several interpreters and takes seconds, so it runs on its own
+ * thread rather than the model loader's: a model loads with {@link #DEFAULT} the first
+ * time and with the tuned configuration from its next load.
+ *
+ * Timings taken while detection runs would favour low thread counts and be stored for
+ * good, so each configuration is timed only once detection has been quiet for
+ * {@link #IDLE_MS}, and timed again if a detection starts during the measurement.
+ */
+public class InterpreterTuner {
+    private static final String TAG = "InterpreterTuner";
+    private static final String PREFS_NAME = "interpreter_tuning";
+
+    // Preference keys being benchmarked right now, so a reload does not start a second run
+    private static final Set<String> tuning = new HashSet<>();
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int TIMED_RUNS = 5;
+    // A configuration this slow is not worth timing further
+    private static final long SLOW_RUN_MS = 3000;
+    // How long detection must be quiet before timing, and how long to wait for that
+    private static final long IDLE_MS = 5000;
+    private static final long IDLE_DEADLINE_MS = 10 * 60_000;
+
+    // Detections started so far, and when the latest one started (see noteDetection)
+    private static final AtomicLong detections = new AtomicLong();
+    private static volatile long lastDetectionMs;
+
+    /** Fallback used when tuning fails: the previous hardcoded setup. */
+    public static final Config DEFAULT = new Config(4, true, false);
+
+    /** One CPU interpreter configuration. */
+    public static final class Config {
+        public final int threads;
+        public final boolean xnnpack;
+        public final boolean fp16;
+
+        public Config(int threads, boolean xnnpack, boolean fp16) {
+            this.threads = threads;
+            this.xnnpack = xnnpack;
+            this.fp16 = fp16;
+        }
+
+        public Interpreter.Options toOptions() {
+            Interpreter.Options options = new Interpreter.Options();
+            options.setNumThreads(threads);
+            options.setUseXNNPACK(xnnpack);
+            options.setAllowFp16PrecisionForFp32(fp16);
+            return options;
+        }
+
+        String encode() {
+            return threads + "," + xnnpack + "," + fp16;
+        }
+
+        static Config decode(String value) {
+            if (value == null) return null;
+            String[] parts = value.split(",");
+            if (parts.length != 3) return null;
+            try {
+                return new Config(Integer.parseInt(parts[0]), Boolean.parseBoolean(parts[1]),
+                        Boolean.parseBoolean(parts[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d threads, XNNPACK %s, fp16 %s",
+                    threads, xnnpack ? "on" : "off", fp16 ? "on" : "off");
+        }
+    }
+
+    /**
+     * Stored configuration for {@code model} on this device. The first time, returns
+     * {@link #DEFAULT} and starts benchmarking in the background; the result is stored
+     * unless every configuration failed or detection never went idle. {@code model} is
+     * only read; its position is left alone.
+     */
+    public static Config tune(Context context, String modelName, ByteBuffer model) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String key = modelName + ":" + Long.toHexString(modelHash(context, prefs, modelName, model))
+                + ":" + Build.FINGERPRINT;
+        Config stored = Config.decode(prefs.getString(key, null));
+        if (stored != null) {
+            Log.d(TAG, modelName + ": using tuned " + stored);
+            return stored;
+        }
+
+        synchronized (tuning) {
+            if (!tuning.add(key)) return DEFAULT;
+        }
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                long start = System.nanoTime();
+                Config best = benchmark(modelName, model, SystemClock.elapsedRealtime() + IDLE_DEADLINE_MS);
+                if (best == null) {
+                    Log.w(TAG, modelName + ": every configuration failed, nothing stored");
+                    return;
+                }
+                Log.d(TAG, modelName + ": tuned to " + best + " in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+                prefs.edit().putString(key, best.encode()).apply();
+            } catch (TimeoutException | InterruptedException e) {
+                Log.d(TAG, modelName + ": detection never went idle, nothing stored");
+            } finally {
+                synchronized (tuning) {
+                    tuning.remove(key);
+                }
+            }
+        }, "APS-tuner");
+        thread.start();
+        Log.d(TAG, modelName + ": tuning in the background, using " + DEFAULT);
+        return DEFAULT;
+    }
+
+    /** Called as each detection starts, so benchmarks are not timed under contention. */
+    public static void noteDetection() {
+        lastDetectionMs = SystemClock.elapsedRealtime();
+        detections.incrementAndGet();
+    }
+
+    /** Forgets every stored configuration, e.g. after a runtime upgrade. */
+    public static void clear(Context context) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().clear().apply();
+    }
+
+    // ===== Benchmarking =====
+
+    // Fastest configuration, or null if none could be built and run
+    private static Config benchmark(String modelName, ByteBuffer model, long deadline)
+            throws TimeoutException, InterruptedException {
+        Config best = null;
+        double bestMs = Double.MAX_VALUE;
+
+        for (int threads : threadCandidates()) {
+            Config candidate = new Config(threads, true, false);
+            double ms = timeIdle(modelName, model, candidate, deadline);
+            if (ms < bestMs) {
+                bestMs = ms;
+                best = candidate;
+            }
+        }
+
+        if (best == null) return null;
+
+        // Toggled one at a time on the best thread count
+        Config[] variants = {
+                new Config(best.threads, false, false),
+                new Config(best.threads, best.xnnpack, true),
+        };
+        for (Config candidate : variants) {
+            double ms = timeIdle(modelName, model, candidate, deadline);
+            if (ms < bestMs) {
+                bestMs = ms;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    // 1, 2, 4 and every core, capped at the core count
+    private static List<Integer> threadCandidates() {
+        int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+        List<Integer> candidates = new ArrayList<>();
+        for (int threads : new int[]{1, 2, 4, cores}) {
+            if (threads <= cores && !candidates.contains(threads)) candidates.add(threads);
+        }
+        return candidates;
+    }
+
+    // As time(), but only counted if no detection started while it ran
+    private static double timeIdle(String modelName, ByteBuffer model, Config config, long deadline)
+            throws TimeoutException, InterruptedException {
+        while (true) {
+            awaitIdle(deadline);
+            long before = detections.get();
+            double ms = time(modelName, model, config);
+            if (detections.get() == before) return ms;
+            Log.d(TAG, modelName + ": detection ran during " + config + ", timing again");
+        }
+    }
+
+    private static void awaitIdle(long deadline) throws TimeoutException, InterruptedException {
+        while (true) {
+            long now = SystemClock.elapsedRealtime();
+            long quiet = now - lastDetectionMs;
+            if (quiet >= IDLE_MS) return;
+            if (now >= deadline) throw new TimeoutException();
+            Thread.sleep(IDLE_MS - quiet);
+        }
+    }
+
+    /** Median latency of the configuration in ms, or MAX_VALUE if it fails to build or run. */
+    private static double time(String modelName, ByteBuffer model, Config config) {
+        try (Interpreter interpreter = new Interpreter(model.duplicate(), config.toOptions())) {
+            Object[] inputs = new Object[interpreter.getInputTensorCount()];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = syntheticBuffer(interpreter.getInputTensor(i).numBytes());
+            }
+            Map<Integer, Object> outputs = new HashMap<>();
+            for (int i = 0; i < interpreter.getOutputTensorCount(); i++) {
+                outputs.put(i, ByteBuffer.allocateDirect(interpreter.getOutputTensor(i).numBytes())
+                        .order(ByteOrder.nativeOrder()));
+            }
+
+            double[] timings = new double[TIMED_RUNS];
+            for (int run = -WARMUP_RUNS; run < TIMED_RUNS; run++) {
+                for (Object input : inputs) ((ByteBuffer) input).rewind();
+                for (Object output : outputs.values()) ((ByteBuffer) output).rewind();
+                long start = System.nanoTime();
+                interpreter.runForMultipleInputsOutputs(inputs, outputs);
+                double ms = (System.nanoTime() - start) / 1e6;
+                if (run >= 0) timings[run] = ms;
+                if (ms > SLOW_RUN_MS) {
+                    Log.d(TAG, modelName + ": " + config + " too slow (" + (long) ms + " ms)");
+                    return ms;
+                }
+            }
+            Arrays.sort(timings);
+            double median = timings[TIMED_RUNS / 2];
+            Log.d(TAG, String.format(Locale.US, "%s: %s -> %.1f ms", modelName, config, median));
+            return median;
+        } catch (Exception e) {
+            Log.w(TAG, modelName + ": " + config + " failed: " + e.getMessage());
+            return Double.MAX_VALUE;
+        }
+    }
+
+    // Mid-grey with a little texture, so no layer sees an all-zero fast path
+    private static ByteBuffer syntheticBuffer(int bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < bytes; i++) {
+            buffer.put(i, (byte) (0x3F + (i * 31 & 0x0F)));
+        }
+        return buffer;
+    }
+
+    // Bundled models only change with the app, so the CRC is cached against the model's
+    // length and the app's last update instead of reading the whole model on every load
+    private static long modelHash(Context context, SharedPreferences prefs, String modelName, ByteBuffer model) {
+        long updated;
+        try {
+            updated = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return hash(model);
+        }
+        String key = "crc:" + modelName;
+        String identity = model.capacity() + "," + updated + ",";
+        String cached = prefs.getString(key, null);
+        if (cached != null && cached.startsWith(identity)) {
+            try {
+                return Long.parseLong(cached.substring(identity.length()), 16);
+            } catch (NumberFormatException ignored) {
+                // Rehashed below
+            }
+        }
+        long hash = hash(model);
+        prefs.edit().putString(key, identity + Long.toHexString(hash)).apply();
+        return hash;
+    }
+
+    private static long hash(ByteBuffer model) {
+        CRC32 crc = new CRC32();
+        crc.update(model.duplicate());
+        return crc.getValue();
+    }
+}
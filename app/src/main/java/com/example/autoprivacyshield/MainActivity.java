@@ -1,10 +1,13 @@
 package com.example.autoprivacyshield;
 
+import android.Manifest;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.pm.PackageManager;
 import android.graphics.Color;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.provider.Settings;
@@ -20,11 +23,12 @@ import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
-import org.tensorflow.lite.Interpreter;
-
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
@@ -33,12 +37,20 @@ public class MainActivity extends AppCompatActivity {
     private ImageView imageView;
     private TextView notificationTextView;
     private Button startBtn;
+    private Button faceBackendButton;
+    // Chosen face backend (FaceDetectorBackend.NAMES), or null for the benchmark's recommendation
+    private String faceBackend;
     private Handler handler;
     private NotificationBroadcastReceiver notificationReceiver;
 
     // Team B Buttons
     private Button btnFaceOcr, btnOcrOnly, btnFaceOnly;
-    private Interpreter yoloInterpreter;
+
+    // Gallery scan
+    private Button scanButton;
+    private TextView scanStatus;
+    private boolean scanRunning;
+    private GalleryScanReceiver scanReceiver;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -50,7 +62,7 @@ public class MainActivity extends AppCompatActivity {
         initTeamAComponents();
         initTeamBComponents();
 
-        DetectionHandler.initialize(this);
+        // Detection models load when screen capture starts (ScreenCaptureService)
 
         Log.d(TAG, "✅ AutoPrivacyShield initialized");
     }
@@ -67,6 +79,25 @@ public class MainActivity extends AppCompatActivity {
         LocalBroadcastManager.getInstance(this).registerReceiver(notificationReceiver, filter);
 
         startBtn.setOnClickListener(v -> requestScreenCapture());
+
+        faceBackendButton = findViewById(R.id.faceBackendButton);
+        faceBackendButton.setOnClickListener(v -> cycleFaceBackend());
+        showFaceBackend();
+    }
+
+    // Auto, then each backend in turn; a running capture switches right away
+    private void cycleFaceBackend() {
+        String[] names = FaceDetectorBackend.NAMES;
+        int index = Arrays.asList(names).indexOf(faceBackend);
+        faceBackend = index + 1 < names.length ? names[index + 1] : null;
+        DetectionHandler.setFaceBackend(faceBackend != null
+                ? faceBackend : FaceBackendBenchmark.recommendedBackend(this));
+        showFaceBackend();
+    }
+
+    private void showFaceBackend() {
+        faceBackendButton.setText("Face detector: " + (faceBackend != null
+                ? faceBackend : "Auto (" + FaceBackendBenchmark.recommendedBackend(this) + ")"));
     }
 
     /** ------------------- TEAM B ------------------- */
@@ -79,13 +110,14 @@ public class MainActivity extends AppCompatActivity {
         btnOcrOnly.setOnClickListener(v -> startActivity(new Intent(this, OCRActivity.class)));
         btnFaceOnly.setOnClickListener(v -> startActivity(new Intent(this, FaceDetectionActivity.class)));
 
-        try {
-            YoloV8Helper helper = new YoloV8Helper(this);
-            yoloInterpreter = helper.getInterpreter();
-            Log.d(TAG, "✅ YOLOv8 model loaded successfully");
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Failed to load YOLOv8 model", e);
-        }
+        scanButton = findViewById(R.id.scanButton);
+        scanStatus = findViewById(R.id.scanStatus);
+        scanRunning = GalleryScanner.isResumePending(this);
+        scanButton.setText(scanRunning ? "Stop Gallery Scan" : "Scan Gallery");
+        scanButton.setOnClickListener(v -> toggleGalleryScan());
+        scanReceiver = new GalleryScanReceiver();
+        LocalBroadcastManager.getInstance(this).registerReceiver(scanReceiver,
+                new IntentFilter(GalleryScanService.ACTION_SCAN_PROGRESS));
     }
 
     /** ------------------- SCREEN CAPTURE ------------------- */
@@ -105,6 +137,9 @@ public class MainActivity extends AppCompatActivity {
                     Intent serviceIntent = new Intent(this, ScreenCaptureService.class);
                     serviceIntent.putExtra("resultCode", result.getResultCode());
                     serviceIntent.putExtra("data", result.getData());
+                    if (faceBackend != null) {
+                        serviceIntent.putExtra(ScreenCaptureService.EXTRA_FACE_BACKEND, faceBackend);
+                    }
                     startForegroundService(serviceIntent);
 
                     Toast.makeText(this, "Privacy protection is now active!", Toast.LENGTH_LONG).show();
@@ -115,6 +150,63 @@ public class MainActivity extends AppCompatActivity {
                 }
             });
 
+    /** ------------------- GALLERY SCAN ------------------- */
+    private void toggleGalleryScan() {
+        if (scanRunning) {
+            GalleryScanService.stop(this);
+            scanButton.setEnabled(false);
+            scanStatus.setText("Stopping after the images in progress...");
+            return;
+        }
+
+        String permission = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                ? Manifest.permission.READ_MEDIA_IMAGES : Manifest.permission.READ_EXTERNAL_STORAGE;
+        if (ContextCompat.checkSelfPermission(this, permission) == PackageManager.PERMISSION_GRANTED) {
+            startGalleryScan();
+        } else {
+            imagePermissionLauncher.launch(permission);
+        }
+    }
+
+    private void startGalleryScan() {
+        GalleryScanService.start(this);
+        scanRunning = true;
+        scanButton.setText("Stop Gallery Scan");
+        scanStatus.setText("Loading detection models...");
+    }
+
+    private final ActivityResultLauncher<String> imagePermissionLauncher =
+            registerForActivityResult(new ActivityResultContracts.RequestPermission(), granted -> {
+                if (granted) {
+                    startGalleryScan();
+                } else {
+                    Toast.makeText(this, "Photo access is needed to scan the gallery", Toast.LENGTH_SHORT).show();
+                }
+            });
+
+    private class GalleryScanReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            int scanned = intent.getIntExtra(GalleryScanService.EXTRA_SCANNED, 0);
+            int total = intent.getIntExtra(GalleryScanService.EXTRA_TOTAL, 0);
+            int flagged = intent.getIntExtra(GalleryScanService.EXTRA_FLAGGED, 0);
+            int unscanned = intent.getIntExtra(GalleryScanService.EXTRA_UNSCANNED, 0);
+            float perSecond = intent.getFloatExtra(GalleryScanService.EXTRA_IMAGES_PER_SECOND, 0f);
+
+            if (intent.getBooleanExtra(GalleryScanService.EXTRA_ENDED, false)) {
+                boolean complete = intent.getBooleanExtra(GalleryScanService.EXTRA_COMPLETE, false);
+                scanStatus.setText(String.format(Locale.US, "Scan %s: %d of %d images flagged, %d could not be scanned",
+                        complete ? "complete" : "paused", flagged, scanned, unscanned));
+                scanRunning = false;
+                scanButton.setText(complete ? "Scan Gallery" : "Resume Gallery Scan");
+                scanButton.setEnabled(true);
+            } else {
+                scanStatus.setText(String.format(Locale.US, "Scanned %d/%d - %d flagged - %d unscanned - %.1f images/s",
+                        scanned, total, flagged, unscanned, perSecond));
+            }
+        }
+    }
+
     /** ------------------- NOTIFICATION HANDLER ------------------- */
     private class NotificationBroadcastReceiver extends BroadcastReceiver {
         @Override
@@ -165,6 +257,7 @@ public class MainActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         LocalBroadcastManager.getInstance(this).unregisterReceiver(notificationReceiver);
+        LocalBroadcastManager.getInstance(this).unregisterReceiver(scanReceiver);
         handler.removeCallbacksAndMessages(null);
     }
 }
@@ -0,0 +1,142 @@
+package com.example.autoprivacyshield;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Pixelate and box-blur kernels over an ARGB int buffer holding one mask region
+ * (row-major, {@code width} pixels per row). Work is split into row or column ranges
+ * across a shared fork-join pool; small regions run on the calling thread.
+ *
+ * Kernels only read pixels inside the region, so nothing outside a mask leaks in.
+ */
+public class MaskKernels {
+    // Leave a core for capture and detection
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    // Minimum pixels per fork-join task; below this a range runs inline
+    private static final int MIN_TASK_PIXELS = 16 * 1024;
+
+    interface RangeKernel {
+        void run(int from, int to);
+    }
+
+    /** Replaces every block x block cell with its average colour. */
+    public static void pixelate(int[] pixels, int width, int height, int block) {
+        int blockRows = (height + block - 1) / block;
+        parallelFor(blockRows, width * block, (from, to) -> {
+            for (int blockRow = from; blockRow < to; blockRow++) {
+                int top = blockRow * block;
+                int bottom = Math.min(height, top + block);
+                for (int left = 0; left < width; left += block) {
+                    fillAverage(pixels, width, left, top, Math.min(width, left + block), bottom);
+                }
+            }
+        });
+    }
+
+    /**
+     * Separable box blur, {@code passes} times in each direction (three passes approach a
+     * Gaussian). {@code scratch} must hold at least width * height ints.
+     */
+    public static void boxBlur(int[] pixels, int[] scratch, int width, int height, int radius, int passes) {
+        for (int pass = 0; pass < passes; pass++) {
+            parallelFor(height, width, (from, to) -> {
+                for (int y = from; y < to; y++) {
+                    blurLine(pixels, scratch, y * width, 1, width, radius);
+                }
+            });
+            parallelFor(width, height, (from, to) -> {
+                for (int x = from; x < to; x++) {
+                    blurLine(scratch, pixels, x, width, height, radius);
+                }
+            });
+        }
+    }
+
+    // ===== Kernels =====
+
+    private static void fillAverage(int[] pixels, int width, int left, int top, int right, int bottom) {
+        long a = 0, r = 0, g = 0, b = 0;
+        for (int y = top; y < bottom; y++) {
+            int row = y * width;
+            for (int x = left; x < right; x++) {
+                int p = pixels[row + x];
+                a += p >>> 24;
+                r += (p >> 16) & 0xFF;
+                g += (p >> 8) & 0xFF;
+                b += p & 0xFF;
+            }
+        }
+        int count = (right - left) * (bottom - top);
+        int average = (int) (a / count) << 24 | (int) (r / count) << 16 | (int) (g / count) << 8 | (int) (b / count);
+        for (int y = top; y < bottom; y++) {
+            int row = y * width;
+            for (int x = left; x < right; x++) {
+                pixels[row + x] = average;
+            }
+        }
+    }
+
+    // Sliding-window average along one row (step 1) or column (step width), clamped at the ends
+    private static void blurLine(int[] src, int[] dst, int start, int step, int length, int radius) {
+        int window = 2 * radius + 1;
+        int a = 0, r = 0, g = 0, b = 0;
+        for (int i = -radius; i <= radius; i++) {
+            int p = src[start + clamp(i, length) * step];
+            a += p >>> 24;
+            r += (p >> 16) & 0xFF;
+            g += (p >> 8) & 0xFF;
+            b += p & 0xFF;
+        }
+        for (int i = 0; i < length; i++) {
+            dst[start + i * step] = (a / window) << 24 | (r / window) << 16 | (g / window) << 8 | (b / window);
+            int out = src[start + clamp(i - radius, length) * step];
+            int in = src[start + clamp(i + radius + 1, length) * step];
+            a += (in >>> 24) - (out >>> 24);
+            r += ((in >> 16) & 0xFF) - ((out >> 16) & 0xFF);
+            g += ((in >> 8) & 0xFF) - ((out >> 8) & 0xFF);
+            b += (in & 0xFF) - (out & 0xFF);
+        }
+    }
+
+    private static int clamp(int index, int length) {
+        return index < 0 ? 0 : (index >= length ? length - 1 : index);
+    }
+
+    // ===== Fork-join splitting =====
+
+    private static void parallelFor(int count, int pixelsPerItem, RangeKernel kernel) {
+        int grain = Math.max(1, MIN_TASK_PIXELS / Math.max(1, pixelsPerItem));
+        if (count <= grain) {
+            kernel.run(0, count);
+        } else {
+            POOL.invoke(new RangeTask(kernel, 0, count, grain));
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private final RangeKernel kernel;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RangeTask(RangeKernel kernel, int from, int to, int grain) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                kernel.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(kernel, from, middle, grain), new RangeTask(kernel, middle, to, grain));
+        }
+    }
+}
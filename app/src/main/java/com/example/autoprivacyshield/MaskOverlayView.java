@@ -0,0 +1,44 @@
+package com.example.autoprivacyshield;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Full-screen overlay that paints the mask rects over the live screen, so no masked
+ * bitmap is ever rendered. Rects are in screen pixels; {@link #setMasks} may be called
+ * from any thread. The whole view is redrawn on a change: with hardware acceleration a
+ * partial invalidate repaints the view anyway, and a few rects are cheap to draw.
+ */
+public class MaskOverlayView extends View {
+    private final Paint maskPaint = new Paint();
+    private final int[] location = new int[2];  // UI thread only
+    private volatile Rect[] masks = new Rect[0];
+
+    public MaskOverlayView(Context context) {
+        super(context);
+        maskPaint.setColor(Color.BLACK);
+        maskPaint.setStyle(Paint.Style.FILL);
+    }
+
+    public void setMasks(Rect[] newMasks) {
+        if (Arrays.equals(masks, newMasks)) return;
+        masks = newMasks;
+        postInvalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        // The window may not start at the screen origin (status bar, cutout)
+        getLocationOnScreen(location);
+        canvas.translate(-location[0], -location[1]);
+        for (Rect mask : masks) {
+            canvas.drawRect(mask, maskPaint);
+        }
+    }
+}
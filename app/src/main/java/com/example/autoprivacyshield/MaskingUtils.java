@@ -7,17 +7,179 @@ import android.graphics.Rect;
 import android.graphics.Color;
 
 public class MaskingUtils {
+    private static final Paint BLACK_FILL = new Paint();
+
+    /** How masked areas are rendered. */
+    public enum MaskStyle {
+        BLACKOUT,
+        PIXELATE,
+        BLUR;
+
+        /** Parses a style name (case-insensitive), falling back to {@code fallback}. */
+        public static MaskStyle fromName(String name, MaskStyle fallback) {
+            if (name == null) return fallback;
+            for (MaskStyle style : values()) {
+                if (style.name().equalsIgnoreCase(name)) return style;
+            }
+            return fallback;
+        }
+    }
+
+    // Pixelate cells and blur radius grow with the mask so larger text stays unreadable
+    private static final int PIXELATE_MIN_BLOCK = 12;
+    private static final int BLUR_MIN_RADIUS = 8;
+    private static final int BLUR_PASSES = 3;
+
+    // Per-thread region buffers: [0] pixels, [1] blur scratch
+    private static final ThreadLocal<int[][]> REGION_BUFFERS = ThreadLocal.withInitial(() -> new int[2][0]);
+
+    static {
+        BLACK_FILL.setColor(Color.BLACK);
+        BLACK_FILL.setStyle(Paint.Style.FILL);
+    }
+
     public static Bitmap blackoutRegions(Bitmap source, Rect[] sensitiveAreas) {
         if (source == null || sensitiveAreas == null) return source;
         Bitmap mutableBitmap = source.copy(Bitmap.Config.ARGB_8888, true);
-        Canvas canvas = new Canvas(mutableBitmap);
-        Paint paint = new Paint();
-        paint.setColor(Color.BLACK);
-        paint.setStyle(Paint.Style.FILL);
+        drawBlackout(new Canvas(mutableBitmap), sensitiveAreas);
+        return mutableBitmap;
+    }
+
+    /**
+     * Same as above, but the masked copy is acquired from {@code pool} and owned by the caller.
+     * Areas are padded and coalesced first; with nothing to mask, {@code source} itself is
+     * returned instead of a copy.
+     */
+    public static Bitmap blackoutRegions(Bitmap source, Rect[] sensitiveAreas, BitmapPool pool, int padding) {
+        return maskRegions(source, sensitiveAreas, pool, padding, MaskStyle.BLACKOUT);
+    }
+
+    /** Pooled masking in the given style; see {@link #blackoutRegions(Bitmap, Rect[], BitmapPool, int)}. */
+    public static Bitmap maskRegions(Bitmap source, Rect[] sensitiveAreas, BitmapPool pool, int padding,
+                                     MaskStyle style) {
+        if (source == null || sensitiveAreas == null) return source;
+        return maskCoalesced(source, coalesce(sensitiveAreas, padding, source.getWidth(), source.getHeight()),
+                pool, style);
+    }
+
+    /** Same, masking the sensitive entries of a detection buffer. */
+    public static Bitmap maskRegions(Bitmap source, DetectionBuffer results, BitmapPool pool, int padding,
+                                     MaskStyle style) {
+        if (source == null || results == null) return source;
+        return maskCoalesced(source, coalesce(results, padding, source.getWidth(), source.getHeight()),
+                pool, style);
+    }
+
+    private static Bitmap maskCoalesced(Bitmap source, Rect[] masks, BitmapPool pool, MaskStyle style) {
+        if (masks.length == 0) return source;
+
+        Bitmap masked = pool.acquire(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+        BitmapUtils.copyInto(source, masked);
+        applyMasks(masked, masks, style);
+        return masked;
+    }
+
+    /**
+     * Masks a caller-owned mutable bitmap in place: no copy, and every pixel is painted at
+     * most once however much the areas overlap.
+     */
+    public static void blackoutInPlace(Bitmap target, Rect[] sensitiveAreas, int padding) {
+        maskInPlace(target, sensitiveAreas, padding, MaskStyle.BLACKOUT);
+    }
 
+    public static void maskInPlace(Bitmap target, Rect[] sensitiveAreas, int padding, MaskStyle style) {
+        if (target == null || sensitiveAreas == null) return;
+        if (!target.isMutable()) throw new IllegalArgumentException("Bitmap must be mutable");
+        Rect[] masks = coalesce(sensitiveAreas, padding, target.getWidth(), target.getHeight());
+        if (masks.length > 0) applyMasks(target, masks, style);
+    }
+
+    // ===== Mask styles =====
+
+    // masks must be disjoint and inside the bitmap (see coalesce)
+    private static void applyMasks(Bitmap target, Rect[] masks, MaskStyle style) {
+        if (style == MaskStyle.BLACKOUT) {
+            drawBlackout(new Canvas(target), masks);
+            return;
+        }
+
+        int[][] buffers = REGION_BUFFERS.get();
+        for (Rect mask : masks) {
+            int width = mask.width();
+            int height = mask.height();
+            int size = width * height;
+            if (buffers[0].length < size) buffers[0] = new int[size];
+            if (style == MaskStyle.BLUR && buffers[1].length < size) buffers[1] = new int[size];
+
+            int[] pixels = buffers[0];
+            target.getPixels(pixels, 0, width, mask.left, mask.top, width, height);
+            int shortSide = Math.min(width, height);
+            if (style == MaskStyle.PIXELATE) {
+                MaskKernels.pixelate(pixels, width, height, Math.max(PIXELATE_MIN_BLOCK, shortSide / 4));
+            } else {
+                MaskKernels.boxBlur(pixels, buffers[1], width, height,
+                        Math.max(BLUR_MIN_RADIUS, shortSide / 6), BLUR_PASSES);
+            }
+            target.setPixels(pixels, 0, width, mask.left, mask.top, width, height);
+        }
+    }
+
+    // ===== Rect coalescing =====
+
+    /**
+     * Pads each area, clips it to width x height and returns disjoint rects covering exactly
+     * their union (see {@link RectCoalescer}). Null and empty areas are skipped; nested boxes
+     * vanish into their parents.
+     */
+    public static Rect[] coalesce(Rect[] areas, int padding, int width, int height) {
+        int[] boxes = new int[areas.length * 4];
+        int count = 0;
+        for (Rect area : areas) {
+            if (area == null) continue;
+            count = addClipped(boxes, count, area.left, area.top, area.right, area.bottom, padding, width, height);
+        }
+        return toRects(RectCoalescer.coalesce(boxes, count));
+    }
+
+    /** Same, for the sensitive entries of a detection buffer. */
+    public static Rect[] coalesce(DetectionBuffer results, int padding, int width, int height) {
+        int[] boxes = new int[results.size() * 4];
+        int count = 0;
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.isSensitive(i)) continue;
+            count = addClipped(boxes, count, results.left(i), results.top(i), results.right(i), results.bottom(i),
+                    padding, width, height);
+        }
+        return toRects(RectCoalescer.coalesce(boxes, count));
+    }
+
+    // Appends the padded, clipped box unless it is empty; returns the new count
+    private static int addClipped(int[] boxes, int count, int left, int top, int right, int bottom,
+                                  int padding, int width, int height) {
+        left = Math.max(0, left - padding);
+        top = Math.max(0, top - padding);
+        right = Math.min(width, right + padding);
+        bottom = Math.min(height, bottom + padding);
+        if (left >= right || top >= bottom) return count;
+
+        boxes[4 * count] = left;
+        boxes[4 * count + 1] = top;
+        boxes[4 * count + 2] = right;
+        boxes[4 * count + 3] = bottom;
+        return count + 1;
+    }
+
+    private static Rect[] toRects(int[] boxes) {
+        Rect[] rects = new Rect[boxes.length / 4];
+        for (int i = 0; i < rects.length; i++) {
+            rects[i] = new Rect(boxes[4 * i], boxes[4 * i + 1], boxes[4 * i + 2], boxes[4 * i + 3]);
+        }
+        return rects;
+    }
+
+    private static void drawBlackout(Canvas canvas, Rect[] sensitiveAreas) {
         for (Rect rect : sensitiveAreas) {
-            canvas.drawRect(rect, paint);
+            canvas.drawRect(rect, BLACK_FILL);
         }
-        return mutableBitmap;
     }
 }
@@ -0,0 +1,65 @@
+package com.example.autoprivacyshield;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetector;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/** ML Kit face detection in accurate mode, on the shared registry client. */
+public class MlKitFaceBackend implements FaceDetectorBackend {
+    static final String FACE_TEXT = "Face detected";
+
+    private final ModelRegistry.Handle<FaceDetector> model;
+
+    public MlKitFaceBackend(Context context) {
+        model = ModelRegistry.acquireFaceDetector(context);
+    }
+
+    @Override
+    public String getName() {
+        return MLKIT;
+    }
+
+    @Override
+    public void detect(Bitmap bitmap, DetectionBuffer out, Executor resultExecutor, Callback callback) {
+        FaceDetector detector = model.get();
+        if (detector == null) {
+            resultExecutor.execute(() -> callback.onComplete(null));
+            return;
+        }
+
+        detector.process(InputImage.fromBitmap(bitmap, 0))
+                .addOnSuccessListener(resultExecutor, faces -> {
+                    addFaces(faces, out);
+                    callback.onComplete(null);
+                })
+                .addOnFailureListener(resultExecutor, callback::onComplete);
+    }
+
+    /** Appends ML Kit faces as sensitive {@link DetectionBuffer#TYPE_FACE} entries. */
+    static void addFaces(List<Face> faces, DetectionBuffer out) {
+        for (Face face : faces) {
+            out.add(face.getBoundingBox(), 0, 0, DetectionBuffer.TYPE_FACE, DetectionBuffer.FLAG_SENSITIVE, FACE_TEXT);
+        }
+    }
+
+    @Override
+    public boolean isLoading() {
+        return model.isLoading();
+    }
+
+    @Override
+    public boolean awaitReady(long timeoutMs) {
+        return model.await(timeoutMs) != null;
+    }
+
+    @Override
+    public void close() {
+        model.close();
+    }
+}
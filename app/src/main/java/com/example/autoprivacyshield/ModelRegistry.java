@@ -0,0 +1,322 @@
+package com.example.autoprivacyshield;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mediapipe.tasks.core.BaseOptions;
+import com.google.mediapipe.tasks.vision.core.RunningMode;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+import com.google.mlkit.vision.text.TextRecognition;
+import com.google.mlkit.vision.text.TextRecognizer;
+import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide owner of the detection models. Each model is loaded once, on a background
+ * thread, when it is first acquired, and shared by every holder of a {@link Handle}.
+ * Once the last handle is closed the model is kept for {@link #IDLE_RELEASE_MS} in case
+ * it is needed again, then closed.
+ *
+ * Loading and closing both run on the loader thread, so a model is never closed while
+ * it is still being built. ML Kit clients are warmed up with a blank frame before they
+ * are handed out. Under memory pressure or when the UI is hidden, models nobody holds
+ * are closed right away instead of after the idle delay.
+ */
+public final class ModelRegistry {
+    private static final String TAG = "ModelRegistry";
+    // Covers switching between screens and restarting capture without a reload
+    private static final long IDLE_RELEASE_MS = 30_000;
+    private static final int WARMUP_SIZE = 64;
+    private static final long WARMUP_TIMEOUT_MS = 5_000;
+
+    public static final String YOLO = "yolov8";
+    // ML Kit face option sets: boxes only, and with landmarks and classification
+    public static final String FACE_DETECTOR = "mlkit-face-accurate";
+    public static final String FACE_DETECTOR_ALL = "mlkit-face-accurate-all";
+    public static final String TEXT_RECOGNIZER = "mlkit-text-latin";
+    public static final String BLAZEFACE = "mediapipe-blazeface-video";
+
+    private static final String BLAZEFACE_MODEL_FILE = "blaze_face_short_range.tflite";
+
+    public interface Loader<T> {
+        T load(Context context) throws Exception;
+    }
+
+    public interface ReadyCallback<T> {
+        /** {@code model} is null if it failed to load or the handle was closed. */
+        void onReady(T model);
+    }
+
+    private interface WarmUp<T> {
+        Task<?> process(T client, InputImage image);
+    }
+
+    // Guarded by ModelRegistry.class
+    private static final Map<String, Entry> entries = new HashMap<>();
+    private static Handler loaderHandler;
+    private static boolean trimCallbacksRegistered;
+    private static Bitmap warmUpFrame;  // Loader thread only
+
+    private static final ComponentCallbacks2 TRIM_CALLBACKS = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) releaseIdleNow();
+        }
+
+        @Override
+        public void onLowMemory() {
+            releaseIdleNow();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    private ModelRegistry() {
+    }
+
+    // ===== Known models =====
+
+    public static Handle<YoloV8Helper> acquireYolo(Context context) {
+        return acquire(context, YOLO, YoloV8Helper::new);
+    }
+
+    public static Handle<FaceDetector> acquireFaceDetector(Context context) {
+        return acquireFaceDetector(context, FACE_DETECTOR);
+    }
+
+    /** Face client for {@link #FACE_DETECTOR} or {@link #FACE_DETECTOR_ALL}. */
+    public static Handle<FaceDetector> acquireFaceDetector(Context context, String key) {
+        boolean all = FACE_DETECTOR_ALL.equals(key);
+        FaceDetectorOptions options = new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
+                .setLandmarkMode(all ? FaceDetectorOptions.LANDMARK_MODE_ALL : FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setClassificationMode(all
+                        ? FaceDetectorOptions.CLASSIFICATION_MODE_ALL : FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .build();
+        return acquire(context, all ? FACE_DETECTOR_ALL : FACE_DETECTOR,
+                appContext -> warmUp(all ? FACE_DETECTOR_ALL : FACE_DETECTOR,
+                        FaceDetection.getClient(options), FaceDetector::process));
+    }
+
+    public static Handle<TextRecognizer> acquireTextRecognizer(Context context) {
+        return acquire(context, TEXT_RECOGNIZER, appContext -> warmUp(TEXT_RECOGNIZER,
+                TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS), TextRecognizer::process));
+    }
+
+    public static Handle<com.google.mediapipe.tasks.vision.facedetector.FaceDetector> acquireBlazeFace(
+            Context context) {
+        return acquire(context, BLAZEFACE, appContext ->
+                com.google.mediapipe.tasks.vision.facedetector.FaceDetector.createFromOptions(appContext,
+                        com.google.mediapipe.tasks.vision.facedetector.FaceDetector.FaceDetectorOptions.builder()
+                                .setBaseOptions(BaseOptions.builder().setModelAssetPath(BLAZEFACE_MODEL_FILE).build())
+                                .setRunningMode(RunningMode.VIDEO)
+                                .setMinDetectionConfidence(0.5f)
+                                .build()));
+    }
+
+    // First ML Kit call loads the native model; pay for it here instead of on the first image
+    private static <T> T warmUp(String key, T client, WarmUp<T> warmUp) {
+        if (warmUpFrame == null) {
+            warmUpFrame = Bitmap.createBitmap(WARMUP_SIZE, WARMUP_SIZE, Bitmap.Config.ARGB_8888);
+        }
+        try {
+            Tasks.await(warmUp.process(client, InputImage.fromBitmap(warmUpFrame, 0)),
+                    WARMUP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Log.w(TAG, key + " warm-up failed", e);
+        }
+        return client;
+    }
+
+    // ===== Reference counting =====
+
+    /**
+     * Takes a reference to the model under {@code key}, starting its load if it is not
+     * loaded or loading. The loader only runs when the key has no live model, so every
+     * caller of a key must pass an equivalent loader.
+     */
+    public static synchronized <T> Handle<T> acquire(Context context, String key, Loader<T> loader) {
+        if (!trimCallbacksRegistered) {
+            context.getApplicationContext().registerComponentCallbacks(TRIM_CALLBACKS);
+            trimCallbacksRegistered = true;
+        }
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            entries.put(key, entry);
+        }
+        entry.refCount++;
+        entry.pendingRelease = null;
+
+        if (entry.model == null && !entry.loading) {
+            entry.loading = true;
+            entry.ready = new CountDownLatch(1);
+            Entry loading = entry;
+            Context appContext = context.getApplicationContext();
+            loaderHandler().post(() -> load(loading, loader, appContext));
+        }
+        return new Handle<>(entry);
+    }
+
+    private static void load(Entry entry, Loader<?> loader, Context appContext) {
+        long start = System.nanoTime();
+        Object model = null;
+        try {
+            model = loader.load(appContext);
+            Log.d(TAG, entry.key + " loaded in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to load " + entry.key, e);
+        }
+
+        synchronized (ModelRegistry.class) {
+            entry.model = model;
+            entry.loading = false;
+            // Everyone let go while it was loading
+            if (entry.refCount == 0) scheduleRelease(entry);
+        }
+        entry.ready.countDown();
+    }
+
+    private static synchronized void release(Entry entry) {
+        if (--entry.refCount == 0) scheduleRelease(entry);
+    }
+
+    // Caller holds the class lock
+    private static void scheduleRelease(Entry entry) {
+        Runnable release = new Runnable() {
+            @Override
+            public void run() {
+                Object model;
+                synchronized (ModelRegistry.class) {
+                    if (entry.pendingRelease != this) return;  // Re-acquired meanwhile
+                    model = entry.model;
+                    entry.model = null;
+                    entry.pendingRelease = null;
+                    entries.remove(entry.key);
+                }
+                closeModel(entry.key, model);
+            }
+        };
+        entry.pendingRelease = release;
+        loaderHandler().postDelayed(release, IDLE_RELEASE_MS);
+    }
+
+    /** Closes every model nobody holds now rather than after the idle delay. */
+    public static synchronized void releaseIdleNow() {
+        if (loaderHandler == null) return;
+        for (Entry entry : entries.values()) {
+            if (entry.pendingRelease == null) continue;
+            loaderHandler.removeCallbacks(entry.pendingRelease);
+            loaderHandler.post(entry.pendingRelease);
+        }
+    }
+
+    private static void closeModel(String key, Object model) {
+        if (!(model instanceof AutoCloseable)) return;
+        try {
+            ((AutoCloseable) model).close();
+            Log.d(TAG, key + " released");
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to close " + key, e);
+        }
+    }
+
+    private static synchronized Handler loaderHandler() {
+        if (loaderHandler == null) {
+            HandlerThread thread = new HandlerThread("APS-models", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            loaderHandler = new Handler(thread.getLooper());
+        }
+        return loaderHandler;
+    }
+
+    private static final class Entry {
+        final String key;
+        int refCount;
+        boolean loading;
+        volatile Object model;
+        CountDownLatch ready;
+        Runnable pendingRelease;
+
+        Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    /** One reference to a shared model. Close it when done; closing twice is harmless. */
+    public static final class Handle<T> implements AutoCloseable {
+        private final Entry entry;
+        private final CountDownLatch ready;
+        private volatile boolean closed;
+
+        Handle(Entry entry) {
+            this.entry = entry;
+            this.ready = entry.ready;
+        }
+
+        /** The model, or null while it is loading, if loading failed, or after close. */
+        @SuppressWarnings("unchecked")
+        public T get() {
+            return closed ? null : (T) entry.model;
+        }
+
+        /** True until the load has finished, successfully or not. */
+        public boolean isLoading() {
+            return !closed && ready.getCount() > 0;
+        }
+
+        /**
+         * Waits up to {@code timeoutMs} for the load to finish. Must not be called on the
+         * main thread; returns null on failure or timeout.
+         */
+        public T await(long timeoutMs) {
+            try {
+                ready.await(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return get();
+        }
+
+        /**
+         * Calls back on {@code executor} once the load has finished, right away if it
+         * already has. For callers that must not block, such as the main thread.
+         */
+        public void whenReady(Executor executor, ReadyCallback<T> callback) {
+            if (ready.getCount() == 0) {
+                executor.execute(() -> callback.onReady(get()));
+                return;
+            }
+            // Loads run in order on the loader thread, so this runs after ours
+            loaderHandler().post(() -> executor.execute(() -> callback.onReady(get())));
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+            }
+            release(entry);
+        }
+    }
+}
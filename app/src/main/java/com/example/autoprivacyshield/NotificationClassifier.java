@@ -0,0 +1,157 @@
+package com.example.autoprivacyshield;
+
+import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Classifies notification text off the listener thread. Chat apps re-post a conversation's
+ * notification for every message, so posts with the same key that arrive within
+ * {@link #COALESCE_WINDOW_MS} of the first are merged and only the latest text is checked.
+ *
+ * At most {@link #MAX_PENDING} keys wait at a time; when a new key arrives at the limit
+ * the longest-waiting one is classified right away, without the rest of its window.
+ */
+public class NotificationClassifier {
+    private static final long COALESCE_WINDOW_MS = 300;
+    private static final int MAX_PENDING = 64;
+
+    public interface Listener {
+        /** Called on the classifier thread once per coalesced post. */
+        void onClassified(String sender, String message, boolean sensitive);
+    }
+
+    private static final class Pending {
+        String sender;
+        String message;
+
+        Pending(String sender, String message) {
+            this.sender = sender;
+            this.message = message;
+        }
+    }
+
+    private final Listener listener;
+    private final PipelineStage stage = new PipelineStage("notifications", 1, Process.THREAD_PRIORITY_BACKGROUND);
+    private final Handler handler = stage.getHandler();
+    private final long createdAtMs = SystemClock.uptimeMillis();
+
+    // Guarded by this; insertion order is arrival order of each key's first post
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    // Evicted from pending and due right away, oldest first; guarded by this
+    private final ArrayDeque<Pending> overflow = new ArrayDeque<>();
+    private long posted;
+    private long coalesced;
+    private long overflowed;
+    private long classified;
+
+    public NotificationClassifier(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Queues a post; may be called from any thread. */
+    public void submit(String key, String sender, String message) {
+        Pending added;
+        Pending evicted = null;
+        synchronized (this) {
+            posted++;
+            Pending existing = pending.get(key);
+            if (existing != null) {
+                existing.sender = sender;
+                existing.message = message;
+                coalesced++;
+                return;
+            }
+
+            if (pending.size() >= MAX_PENDING) {
+                Iterator<Pending> eldest = pending.values().iterator();
+                evicted = eldest.next();
+                eldest.remove();
+                overflow.add(evicted);
+                overflowed++;
+            }
+            added = new Pending(sender, message);
+            pending.put(key, added);
+        }
+        if (evicted != null) handler.post(this::classifyOverflow);
+        handler.postDelayed(() -> classify(key, added), COALESCE_WINDOW_MS);
+    }
+
+    private void classify(String key, Pending post) {
+        synchronized (this) {
+            // Classified early on overflow, or replaced by a later post with its own window
+            if (pending.get(key) != post) return;
+            pending.remove(key);
+        }
+        classifyNow(post);
+    }
+
+    private void classifyOverflow() {
+        Pending post;
+        synchronized (this) {
+            post = overflow.poll();
+        }
+        if (post != null) classifyNow(post);
+    }
+
+    // The post is out of pending, so no later post updates it any more
+    private void classifyNow(Pending post) {
+        String sender;
+        String message;
+        synchronized (this) {
+            sender = post.sender;
+            message = post.message;
+        }
+
+        long start = System.nanoTime();
+        boolean sensitive = OCRDetector.detectSensitiveInfoFromText(message);
+        synchronized (this) {
+            classified++;
+        }
+        listener.onClassified(sender, message, sensitive);
+        stage.recordWork(start);
+    }
+
+    /** Classified posts per second since the classifier was created. */
+    public synchronized double getClassifiedPerSecond() {
+        long elapsedMs = Math.max(1, SystemClock.uptimeMillis() - createdAtMs);
+        return classified * 1000.0 / elapsedMs;
+    }
+
+    /** Fraction of posts merged into an earlier post with the same key. */
+    public synchronized double getCoalescingRatio() {
+        return posted == 0 ? 0 : (double) coalesced / posted;
+    }
+
+    public synchronized long getClassifiedCount() {
+        return classified;
+    }
+
+    public synchronized String describeStats() {
+        return String.format(Locale.US, "posted=%d classified=%d (%.2f/s) coalesced=%d (%.0f%%) overflowed=%d pending=%d",
+                posted, classified, getClassifiedPerSecond(), coalesced, getCoalescingRatio() * 100,
+                overflowed, pending.size());
+    }
+
+    /** Classifies evicted posts and those still waiting out their window, then stops the thread. */
+    public void quit() {
+        handler.removeCallbacksAndMessages(null);
+        synchronized (this) {
+            for (int i = 0; i < overflow.size(); i++) {
+                handler.post(this::classifyOverflow);
+            }
+            for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+                String key = entry.getKey();
+                Pending post = entry.getValue();
+                handler.post(() -> classify(key, post));
+            }
+        }
+        stage.quit();
+    }
+}
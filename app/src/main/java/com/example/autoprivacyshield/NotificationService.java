@@ -21,7 +21,24 @@ public class NotificationService extends NotificationListenerService {
     public static final String EXTRA_IS_SENSITIVE = "extra_is_sensitive";
 
     private static final String TAG = "NotificationService";
+    private static final int STATS_LOG_INTERVAL = 50;
 
+    private NotificationClassifier classifier;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        classifier = new NotificationClassifier(this::onClassified);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        Log.d(TAG, "Notification classifier: " + classifier.describeStats());
+        classifier.quit();
+    }
+
+    // Only reads the text here; classification runs on the classifier's thread
     @Override
     public void onNotificationPosted(StatusBarNotification sbn) {
         Notification notification = sbn.getNotification();
@@ -57,9 +74,10 @@ public class NotificationService extends NotificationListenerService {
 
         if (TextUtils.isEmpty(message)) return;
 
-        // Check sensitivity (OCRDetector handles OTP, phone, card, etc.)
-        boolean isSensitive = OCRDetector.detectSensitiveInfoFromText(message);
+        classifier.submit(sbn.getKey(), sender, message);
+    }
 
+    private void onClassified(String sender, String message, boolean isSensitive) {
         Log.d(TAG, "📩 New notification from " + sender + ": " + message + " | Sensitive=" + isSensitive);
 
         // Send broadcast to MainActivity
@@ -69,5 +87,9 @@ public class NotificationService extends NotificationListenerService {
         intent.putExtra(EXTRA_IS_SENSITIVE, isSensitive);
 
         LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
+
+        if (classifier.getClassifiedCount() % STATS_LOG_INTERVAL == 0) {
+            Log.d(TAG, "Notification classifier: " + classifier.describeStats());
+        }
     }
 }
@@ -3,7 +3,6 @@ package com.example.autoprivacyshield;
 import android.app.Activity;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -12,11 +11,13 @@ import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.StyleSpan;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -26,27 +27,31 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.text.TextRecognition;
 import com.google.mlkit.vision.text.TextRecognizer;
-import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.util.List;
 
 public class OCRActivity extends AppCompatActivity {
 
+    private static final String TAG = "OCRActivity";
     private static final int PICK_IMAGE = 1;
+    // Shown on screen and used for the boxes; OCR reads full-resolution tiles instead
+    private static final int PREVIEW_MAX_SIDE = 2048;
 
     private TextView resultTextView;
     private Button uploadButton, copyButton;
     private ImageView imageView;
     private Bitmap selectedBitmap;
+    // Shared recognizer, held while the activity is visible
+    private ModelRegistry.Handle<TextRecognizer> textModel;
+    private DetectionCache detectionCache;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_ocr);
+        detectionCache = DetectionCache.get(this);
 
         resultTextView = findViewById(R.id.resultText);
         uploadButton = findViewById(R.id.uploadButton);
@@ -66,6 +71,18 @@ public class OCRActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        textModel = ModelRegistry.acquireTextRecognizer(this);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        textModel.close();
+    }
+
     private void showImagePickerOptions() {
         Intent galleryIntent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
         galleryIntent.setType("image/*");
@@ -92,94 +109,135 @@ public class OCRActivity extends AppCompatActivity {
 
             if (imageUri != null) {
                 try {
-                    InputStream imageStream = getContentResolver().openInputStream(imageUri);
-                    bitmap = BitmapFactory.decodeStream(imageStream);
-                } catch (Exception e) {
+                    bitmap = BitmapUtils.decodeScaled(getContentResolver(), imageUri, PREVIEW_MAX_SIDE);
+                } catch (IOException e) {
                     e.printStackTrace();
+                    imageUri = null;
                 }
             }
 
             if (bitmap == null) {
+                imageUri = null;
                 Drawable drawable = ContextCompat.getDrawable(this, R.drawable.test_face);
                 bitmap = ((BitmapDrawable) drawable).getBitmap();
             }
 
             selectedBitmap = bitmap;
             imageView.setImageBitmap(bitmap);
-            runTextRecognitionFromBitmap(bitmap);
+            runTextRecognition(imageUri, bitmap);
         }
     }
 
-    private void runTextRecognitionFromBitmap(Bitmap bitmap) {
+    /**
+     * Reads the full-resolution image at {@code imageUri} tile by tile, or {@code preview}
+     * itself when there is no Uri, and draws the results on {@code preview}. An image read
+     * before is answered from the detection cache, keyed by the preview's pixels; hashing
+     * and the lookup run in the background.
+     */
+    private void runTextRecognition(@Nullable Uri imageUri, Bitmap preview) {
+        long start = SystemClock.elapsedRealtime();
+        DetectionCache.background().execute(() -> {
+            long cacheKey = DetectionCache.key(DetectionCache.contentHash(preview), TiledTextRecognizer.CACHE_CONFIG);
+            DetectionCache.Entry cached = detectionCache.get(cacheKey);
+            runOnUiThread(() -> {
+                if (cached != null) {
+                    Log.d(TAG, "OCR served from cache in " + (SystemClock.elapsedRealtime() - start) + " ms");
+                    showResults(preview, TiledTextRecognizer.Result.fromCache(cached));
+                } else {
+                    recognizeText(imageUri, preview, cacheKey, start);
+                }
+            });
+        });
+    }
+
+    private void recognizeText(@Nullable Uri imageUri, Bitmap preview, long cacheKey, long start) {
+        textModel.whenReady(this::runOnUiThread, recognizer -> {
+            if (recognizer == null) {
+                resultTextView.setText("OCR failed: text recognizer unavailable");
+                return;
+            }
+            TiledTextRecognizer.Callback callback = (result, error) -> {
+                if (result == null) {
+                    resultTextView.setText("OCR failed: " + error.getMessage());
+                    return;
+                }
+                Log.d(TAG, "OCR completed in " + (SystemClock.elapsedRealtime() - start) + " ms ("
+                        + result.tiles + " tiles)");
+                DetectionCache.background().execute(() -> result.cache(detectionCache, cacheKey));
+                showResults(preview, result);
+            };
+            if (imageUri != null) {
+                TiledTextRecognizer.recognize(getContentResolver(), imageUri, recognizer, this::runOnUiThread, callback);
+            } else {
+                TiledTextRecognizer.recognize(preview, recognizer, this::runOnUiThread, callback);
+            }
+        });
+    }
+
+    private void showResults(Bitmap bitmap, TiledTextRecognizer.Result ocr) {
         try {
-            InputImage image = InputImage.fromBitmap(bitmap, 0);
-            TextRecognizer recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
-
-            recognizer.process(image)
-                    .addOnSuccessListener(visionText -> {
-                        List<DetectResult> detectResults = OCRDetector.detectSensitiveInfo(visionText);
-
-                        // Draw bounding boxes
-                        Bitmap mutableBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, true);
-                        Canvas canvas = new Canvas(mutableBitmap);
-                        Paint paintNormal = new Paint();
-                        paintNormal.setColor(Color.GREEN);
-                        paintNormal.setStyle(Paint.Style.STROKE);
-                        paintNormal.setStrokeWidth(4f);
-
-                        Paint paintSensitive = new Paint();
-                        paintSensitive.setColor(Color.BLACK);
-                        paintSensitive.setStyle(Paint.Style.FILL);
-                        paintSensitive.setStrokeWidth(6f);
-
-                        for (DetectResult result : detectResults) {
-                            Rect box = result.getBoundingBox();
-                            if (box != null) {
-                                if (result.isSensitive()) {
-                                    canvas.drawRect(box, paintSensitive);
-                                } else {
-                                    canvas.drawRect(box, paintNormal);
-                                }
-                            }
-                        }
-
-                        imageView.setImageBitmap(mutableBitmap);
-
-                        // Text output
-                        SpannableStringBuilder spannableBuilder = new SpannableStringBuilder();
-
-                        for (DetectResult result : detectResults) {
-                            String displayText = result.getText();
-                            if (result.isSensitive()) {
-                                displayText += "  [Sensitive: " + result.getType() + "]";
-                            }
-                            displayText += "\n";
-
-                            int start = spannableBuilder.length();
-                            spannableBuilder.append(displayText);
-                            int end = spannableBuilder.length();
-
-                            if (result.isSensitive()) {
-                                spannableBuilder.setSpan(
-                                        new ForegroundColorSpan(ContextCompat.getColor(this, android.R.color.holo_red_dark)),
-                                        start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
-                                );
-                                spannableBuilder.setSpan(
-                                        new StyleSpan(android.graphics.Typeface.BOLD),
-                                        start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
-                                );
-                            }
-                        }
-
-                        if (spannableBuilder.length() == 0) {
-                            resultTextView.setText("No text detected in the image.");
-                        } else {
-                            resultTextView.setText(spannableBuilder);
-                            copyButton.setVisibility(android.view.View.VISIBLE);
-                            uploadButton.setText("Select Another Image");
-                        }
-                    })
-                    .addOnFailureListener(e -> resultTextView.setText("OCR failed: " + e.getMessage()));
+            List<DetectResult> detectResults = OCRDetector.detectSensitiveInfo(
+                    ocr.lines, bitmap.getWidth() / (float) ocr.width);
+
+            // Draw bounding boxes
+            Bitmap mutableBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+            Canvas canvas = new Canvas(mutableBitmap);
+            Paint paintNormal = new Paint();
+            paintNormal.setColor(Color.GREEN);
+            paintNormal.setStyle(Paint.Style.STROKE);
+            paintNormal.setStrokeWidth(4f);
+
+            Paint paintSensitive = new Paint();
+            paintSensitive.setColor(Color.BLACK);
+            paintSensitive.setStyle(Paint.Style.FILL);
+            paintSensitive.setStrokeWidth(6f);
+
+            for (DetectResult result : detectResults) {
+                Rect box = result.getBoundingBox();
+                if (box != null) {
+                    if (result.isSensitive()) {
+                        canvas.drawRect(box, paintSensitive);
+                    } else {
+                        canvas.drawRect(box, paintNormal);
+                    }
+                }
+            }
+
+            imageView.setImageBitmap(mutableBitmap);
+
+            // Text output
+            SpannableStringBuilder spannableBuilder = new SpannableStringBuilder();
+
+            for (DetectResult result : detectResults) {
+                String displayText = result.getText();
+                if (result.isSensitive()) {
+                    displayText += "  [Sensitive: " + result.getType() + "]";
+                }
+                displayText += "\n";
+
+                int start = spannableBuilder.length();
+                spannableBuilder.append(displayText);
+                int end = spannableBuilder.length();
+
+                if (result.isSensitive()) {
+                    spannableBuilder.setSpan(
+                            new ForegroundColorSpan(ContextCompat.getColor(this, android.R.color.holo_red_dark)),
+                            start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
+                    );
+                    spannableBuilder.setSpan(
+                            new StyleSpan(android.graphics.Typeface.BOLD),
+                            start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
+                    );
+                }
+            }
+
+            if (spannableBuilder.length() == 0) {
+                resultTextView.setText("No text detected in the image.");
+            } else {
+                resultTextView.setText(spannableBuilder);
+                copyButton.setVisibility(android.view.View.VISIBLE);
+                uploadButton.setText("Select Another Image");
+            }
         } catch (Exception e) {
             e.printStackTrace();
             resultTextView.setText("Error processing image: " + e.getMessage());
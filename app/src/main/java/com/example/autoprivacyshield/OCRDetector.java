@@ -7,23 +7,12 @@ import com.google.mlkit.vision.text.Text;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 
 public class OCRDetector {
 
-    // Regex patterns (private, not accessed directly outside)
-    private static final Pattern PHONE_PATTERN =
-            Pattern.compile("(?:\\+91[-\\s]?)?[6-9]\\d{9}");
-    private static final Pattern EMAIL_PATTERN =
-            Pattern.compile("[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}");
-    private static final Pattern CARD_PATTERN =
-            Pattern.compile("\\b\\d{4}([- ]?\\d{4}){3}\\b");
-    private static final Pattern AADHAAR_PATTERN =
-            Pattern.compile("\\b\\d{4}\\s?\\d{4}\\s?\\d{4}\\b");
-    private static final Pattern PAN_PATTERN =
-            Pattern.compile("[A-Z]{5}[0-9]{4}[A-Z]");
-    private static final Pattern OTP_PATTERN =
-            Pattern.compile("\\b\\d{4,8}\\b");
+    // Families checked for OCR lines and notification text (the "otp" keyword, not password/pin)
+    private static final int OCR_FAMILIES =
+            SensitiveTextScanner.PATTERNS | SensitiveTextScanner.KEYWORD_OTP;
 
     /**
      * Method 1: Full OCR detection from ML Kit Vision text
@@ -37,63 +26,64 @@ public class OCRDetector {
                 Rect boundingBox = line.getBoundingBox();
 
                 if (!TextUtils.isEmpty(lineText) && boundingBox != null) {
-                    String type = "Normal";
-                    boolean isSensitive = false;
-
-                    if (EMAIL_PATTERN.matcher(lineText).find()) {
-                        type = "Email";
-                        isSensitive = true;
-                    } else if (CARD_PATTERN.matcher(lineText).find()) {
-                        type = "Card Number";
-                        isSensitive = true;
-                    } else if (AADHAAR_PATTERN.matcher(lineText).find()) {
-                        type = "Sensitive Number";
-                        isSensitive = true;
-                    } else if (PAN_PATTERN.matcher(lineText).find()) {
-                        type = "PAN Number";
-                        isSensitive = true;
-                    } else if (PHONE_PATTERN.matcher(lineText).find()) {
-                        type = "Phone Number";
-                        isSensitive = true;
-                    } else if (OTP_PATTERN.matcher(lineText).find()
-                            || lineText.toLowerCase().contains("otp")) {
-                        type = "OTP";
-                        isSensitive = true;
-                    }
-
-                    results.add(new DetectResult(lineText, isSensitive, type, boundingBox));
+                    results.add(classifyLine(lineText, boundingBox));
                 }
             }
         }
         return results;
     }
 
+    /**
+     * Method 1b: OCR detection from tiled recognition, boxes scaled by {@code scale}
+     * (e.g. onto a downscaled preview)
+     */
+    public static List<DetectResult> detectSensitiveInfo(List<TiledTextRecognizer.Line> lines, float scale) {
+        List<DetectResult> results = new ArrayList<>(lines.size());
+        for (TiledTextRecognizer.Line line : lines) {
+            Rect box = line.box;
+            results.add(classifyLine(line.text, new Rect(Math.round(box.left * scale), Math.round(box.top * scale),
+                    Math.round(box.right * scale), Math.round(box.bottom * scale))));
+        }
+        return results;
+    }
+
+    private static DetectResult classifyLine(String lineText, Rect boundingBox) {
+        // One scan for all families, then the same precedence as before
+        int found = SensitiveTextScanner.scan(lineText, OCR_FAMILIES);
+        String type = "Normal";
+        boolean isSensitive = found != 0;
+
+        if ((found & SensitiveTextScanner.EMAIL) != 0) {
+            type = "Email";
+        } else if ((found & SensitiveTextScanner.CARD) != 0) {
+            type = "Card Number";
+        } else if ((found & SensitiveTextScanner.AADHAAR) != 0) {
+            type = "Sensitive Number";
+        } else if ((found & SensitiveTextScanner.PAN) != 0) {
+            type = "PAN Number";
+        } else if ((found & SensitiveTextScanner.PHONE) != 0) {
+            type = "Phone Number";
+        } else if (isSensitive) {
+            type = "OTP";
+        }
+
+        return new DetectResult(lineText, isSensitive, type, boundingBox);
+    }
+
     /**
      * Method 2: Simple string-based sensitive info detection
      * (For notifications, SMS, clipboard text, etc.)
      */
     public static boolean containsSensitive(String text) {
-        if (text == null || text.trim().isEmpty()) {
+        if (TextUtils.isEmpty(text)) {
             return false;
         }
 
-        return EMAIL_PATTERN.matcher(text).find()
-                || CARD_PATTERN.matcher(text).find()
-                || AADHAAR_PATTERN.matcher(text).find()
-                || PAN_PATTERN.matcher(text).find()
-                || PHONE_PATTERN.matcher(text).find()
-                || OTP_PATTERN.matcher(text).find()
-                || text.toLowerCase().contains("otp");
+        return SensitiveTextScanner.containsAny(text, OCR_FAMILIES);
     }
 
     public static boolean detectSensitiveInfoFromText(String text) {
-        return EMAIL_PATTERN.matcher(text).find()
-                || CARD_PATTERN.matcher(text).find()
-                || AADHAAR_PATTERN.matcher(text).find()
-                || PAN_PATTERN.matcher(text).find()
-                || PHONE_PATTERN.matcher(text).find()
-                || OTP_PATTERN.matcher(text).find()
-                || text.toLowerCase().contains("otp");
+        return SensitiveTextScanner.containsAny(text, OCR_FAMILIES);
     }
 
 }
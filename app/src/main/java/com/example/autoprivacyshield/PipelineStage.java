@@ -0,0 +1,104 @@
+package com.example.autoprivacyshield;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One stage of the capture pipeline: a dedicated looper thread with a bounded
+ * hand-off queue and per-stage throughput counters.
+ *
+ * The bound applies where work is admitted, through {@link #tryExecute}. As an
+ * {@link Executor}, for result listeners, the stage never refuses a task: a listener
+ * rejected on a GMS or ML Kit thread would be lost. Tasks past the bound are counted
+ * as overflow instead.
+ */
+public class PipelineStage implements Executor {
+    private final String name;
+    private final int capacity;
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final long createdAtMs = SystemClock.uptimeMillis();
+
+    public PipelineStage(String name, int capacity, int threadPriority) {
+        this.name = name;
+        this.capacity = capacity;
+        thread = new HandlerThread("APS-" + name, threadPriority);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /** Handler for APIs that deliver callbacks on a Handler (ImageReader, MediaProjection). */
+    public Handler getHandler() {
+        return handler;
+    }
+
+    /** Queues the task unless the stage already has {@code capacity} tasks waiting. */
+    public boolean tryExecute(Runnable task) {
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        return post(task);
+    }
+
+    /**
+     * Queues the task whatever the queue depth, for result delivery. Only a stage that has
+     * already quit drops it.
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (queued.incrementAndGet() > capacity) overflowed.incrementAndGet();
+        post(task);
+    }
+
+    private boolean post(Runnable task) {
+        boolean posted = handler.post(() -> {
+            queued.decrementAndGet();
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                recordWork(start);
+            }
+        });
+        if (!posted) {
+            // Looper already quit
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+        }
+        return posted;
+    }
+
+    /** Accounts work that ran on this stage's thread outside {@link #tryExecute}, e.g. a Handler callback. */
+    public void recordWork(long startNanos) {
+        busyNanos.addAndGet(System.nanoTime() - startNanos);
+        completed.incrementAndGet();
+    }
+
+    public String describeStats() {
+        long done = completed.get();
+        long elapsedMs = Math.max(1, SystemClock.uptimeMillis() - createdAtMs);
+        double perSecond = done * 1000.0 / elapsedMs;
+        double avgMs = done == 0 ? 0 : busyNanos.get() / 1e6 / done;
+        return String.format(Locale.US, "%s: %d done (%.1f/s), avg %.1f ms, queued %d, rejected %d, overflowed %d",
+                name, done, perSecond, avgMs, queued.get(), rejected.get(), overflowed.get());
+    }
+
+    /** Lets already queued tasks run, then stops the thread. */
+    public void quit() {
+        thread.quitSafely();
+    }
+}
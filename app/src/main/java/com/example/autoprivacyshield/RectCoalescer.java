@@ -0,0 +1,90 @@
+package com.example.autoprivacyshield;
+
+import java.util.Arrays;
+
+/**
+ * Turns overlapping boxes into disjoint boxes covering exactly their union. Boxes are
+ * packed four ints each (left, top, right, bottom), so the sweep allocates no Rects;
+ * {@link MaskingUtils#coalesce} clips and pads the areas and wraps the result.
+ *
+ * The union is cut into horizontal bands at every top/bottom edge; overlapping spans in a
+ * band are merged, and a span continues the box above it when its edges line up.
+ */
+public class RectCoalescer {
+
+    /**
+     * @param boxes {@code count} non-empty boxes with non-negative edges, packed left, top, right, bottom
+     * @return the disjoint boxes, packed the same way
+     */
+    public static int[] coalesce(int[] boxes, int count) {
+        if (count <= 1) return Arrays.copyOf(boxes, count * 4);
+
+        int[] edges = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            edges[2 * i] = boxes[4 * i + 1];
+            edges[2 * i + 1] = boxes[4 * i + 3];
+        }
+        Arrays.sort(edges);
+
+        int[] result = new int[count * 4];
+        int resultCount = 0;
+        // Indices into result of the boxes that end at the current band's top
+        int[] above = new int[count];
+        int[] current = new int[count];
+        int aboveCount = 0;
+        long[] spans = new long[count];
+
+        for (int e = 0; e + 1 < edges.length; e++) {
+            int top = edges[e];
+            int bottom = edges[e + 1];
+            if (top == bottom) continue;
+
+            // Spans of the boxes covering this band, packed as (left, right) so they sort by left
+            int spanCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (boxes[4 * i + 1] <= top && boxes[4 * i + 3] >= bottom) {
+                    spans[spanCount++] = ((long) boxes[4 * i] << 32) | boxes[4 * i + 2];
+                }
+            }
+            Arrays.sort(spans, 0, spanCount);
+
+            int currentCount = 0;
+            int i = 0;
+            while (i < spanCount) {
+                int left = (int) (spans[i] >>> 32);
+                int right = (int) spans[i];
+                for (i++; i < spanCount && (int) (spans[i] >>> 32) <= right; i++) {
+                    right = Math.max(right, (int) spans[i]);
+                }
+
+                int index = find(result, above, aboveCount, left, right, top);
+                if (index < 0) {
+                    if (result.length < (resultCount + 1) * 4) result = Arrays.copyOf(result, result.length * 2);
+                    index = resultCount++;
+                    result[4 * index] = left;
+                    result[4 * index + 1] = top;
+                    result[4 * index + 2] = right;
+                }
+                result[4 * index + 3] = bottom;
+                current[currentCount++] = index;
+            }
+
+            int[] swap = above;
+            above = current;
+            current = swap;
+            aboveCount = currentCount;
+        }
+        return Arrays.copyOf(result, resultCount * 4);
+    }
+
+    // The box above with the same left and right edges that ends at top, or -1
+    private static int find(int[] result, int[] above, int aboveCount, int left, int right, int top) {
+        for (int a = 0; a < aboveCount; a++) {
+            int index = above[a];
+            if (result[4 * index] == left && result[4 * index + 2] == right && result[4 * index + 3] == top) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
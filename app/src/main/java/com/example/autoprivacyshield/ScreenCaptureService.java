@@ -4,18 +4,21 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
+import android.hardware.display.VirtualDisplay;
 import android.media.Image;
 import android.media.ImageReader;
 import android.media.projection.MediaProjection;
 import android.media.projection.MediaProjectionManager;
 import android.os.Build;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
+import android.os.PowerManager;
+import android.provider.Settings;
+import android.os.Process;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.Display;
@@ -24,18 +27,107 @@ import android.view.WindowManager;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class ScreenCaptureService extends Service {
     private static final String CHANNEL_ID = "ScreenCaptureChannel";
     private static final String TAG = "ScreenCaptureService";
 
+    // Capture resolution, as a fraction of the screen; switchable while projecting
+    public static final String EXTRA_CAPTURE_SCALE = "captureScale";
+    public static final float[] CAPTURE_SCALE_LADDER = {1.0f, 0.75f, 0.5f};
+    private static final float DEFAULT_CAPTURE_SCALE = 1.0f;
+
+    // Mask rendering: a MaskingUtils.MaskStyle name, read when projection starts
+    public static final String EXTRA_MASK_STYLE = "maskStyle";
+    // Draw masks in an overlay window instead of rendering masked bitmaps (needs SYSTEM_ALERT_WINDOW)
+    public static final String EXTRA_OVERLAY_MASKS = "overlayMasks";
+    // Face backend: a FaceDetectorBackend name, read when projection starts
+    public static final String EXTRA_FACE_BACKEND = "faceBackend";
+
+    // Frames collected from a running capture to benchmark the face backends on
+    private static final int BENCHMARK_FRAMES = 20;
+
+    // Frame scheduling: detections in flight, and how old a result may be when it lands
+    private static final int MAX_DETECTIONS_IN_FLIGHT = 1;
+    private static final long RESULT_DEADLINE_MS = 500;
+    private static final int STATS_LOG_INTERVAL = 100;
+
+    // Each in-flight detection posts at most one result per detector (faces, text, objects)
+    // to the mask stage at a time. Result posts are never refused; deeper queues only show
+    // up as overflow in the stage stats, since admission is bounded by the frame scheduler.
+    private static final int DETECT_QUEUE_CAPACITY = MAX_DETECTIONS_IN_FLIGHT;
+    private static final int MASK_QUEUE_CAPACITY = MAX_DETECTIONS_IN_FLIGHT * DetectionUtils.SLOT_COUNT;
+
+    // Frames alive at once: converting + held + pending + in flight + published, plus masked outputs
+    private static final int POOLED_BITMAPS_PER_SIZE = 2 * MAX_DETECTIONS_IN_FLIGHT + 5;
+
+    // Consecutive pure-scroll frames handled by moving the masks before detection runs again
+    private static final int MAX_TRACKED_FRAMES = 4;
+    // Quiet time after a tracked frame before it is detected; longer than a frame at 60 Hz
+    private static final long SCROLL_SETTLE_MS = 50;
+
     private MediaProjection mediaProjection;
-    private ImageReader imageReader;
-    private Handler handler;
+    private VirtualDisplay virtualDisplay;
+    private ImageReader imageReader;  // replaced on the capture thread when the scale changes
+    private volatile float captureScale = DEFAULT_CAPTURE_SCALE;
+    // Scale asked for at start or through setCaptureScale; heat lowers the one in use
+    private volatile float requestedScale = DEFAULT_CAPTURE_SCALE;
+    private volatile int thermalStatus = PowerManager.THERMAL_STATUS_NONE;
+    private volatile MaskingUtils.MaskStyle maskStyle = MaskingUtils.MaskStyle.BLACKOUT;
     private int screenDensity;
     private int screenWidth;
     private int screenHeight;
-    private Bitmap currentFrameBitmap;
-    private Bitmap processedFrameBitmap;  // Processed frame with masking applied
+    // Published results: raw and masked bitmaps of the latest delivered frame (pool-owned,
+    // valid until the next frame is published)
+    private volatile Bitmap currentFrameBitmap;
+    private volatile Bitmap processedFrameBitmap;  // Processed frame with masking applied
+    private CapturedFrame publishedFrame;  // mask stage only; pinned while published
+    private volatile Rect[] sensitiveScreenAreas = new Rect[0];  // screen coordinates
+    private volatile TrackedMasks publishedMasks;  // frame coordinates, for scroll tracking
+    private final Object screenAreasLock = new Object();
+    private volatile MaskOverlayView overlayView;  // non-null in overlay mode
+    private FrameScheduler<CapturedFrame> frameScheduler;
+    private BitmapPool bitmapPool;
+    private int[] convertRow;  // capture thread only
+
+    // Frame-change detection (capture thread); any dropped frame invalidates the last signature
+    private FrameSignature frameSignature = new FrameSignature();
+    private FrameSignature lastSubmittedSignature = new FrameSignature();
+    private volatile boolean lastSubmittedSignatureValid;
+    private volatile long capturedFrames;
+    private volatile long unchangedFrames;
+    private volatile long throttledFrames;
+    private volatile long trackedFrames;
+
+    // Latest changed frame the governor or scroll tracking held back, and its signature
+    // (capture thread). It is re-checked when the governor allows, so the last change
+    // before the screen goes static is still detected.
+    private CapturedFrame heldFrame;
+    private FrameSignature heldSignature = new FrameSignature();
+    private final Runnable recheckHeldFrame = this::recheckHeldFrame;
+
+    // Mask tracking between detections (capture thread)
+    private final ScrollTracker scrollTracker = new ScrollTracker();
+    private int trackedSinceSubmit;
+
+    // Frames collected for a face backend benchmark, null when none is pending (capture thread)
+    private List<Bitmap> benchmarkFrames;
+
+    // Processing cadence: follows detection latency, idles on static screens, backs off when hot
+    private CadenceGovernor cadenceGovernor;
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+
+    // Pipeline stages: capture + convert -> detect -> collect results + mask
+    private PipelineStage captureStage;
+    private PipelineStage detectStage;
+    private PipelineStage maskStage;
+
+    // The service while it is projecting; calls that need a running capture go through it
+    private static volatile ScreenCaptureService running;
 
     @Override
     public void onCreate() {
@@ -51,7 +143,29 @@ public class ScreenCaptureService extends Service {
 
         startForeground(1, notification);
 
-        handler = new Handler(Looper.getMainLooper());
+        bitmapPool = new BitmapPool(POOLED_BITMAPS_PER_SIZE);
+        captureStage = new PipelineStage("capture", 1, Process.THREAD_PRIORITY_DISPLAY);
+        detectStage = new PipelineStage("detect", DETECT_QUEUE_CAPACITY, Process.THREAD_PRIORITY_DEFAULT);
+        maskStage = new PipelineStage("mask", MASK_QUEUE_CAPACITY, Process.THREAD_PRIORITY_DEFAULT);
+
+        frameScheduler = new FrameScheduler<>(MAX_DETECTIONS_IN_FLIGHT, RESULT_DEADLINE_MS,
+                new FrameScheduler.Worker<CapturedFrame>() {
+                    @Override
+                    public void process(FrameScheduler.Job<CapturedFrame> job) {
+                        // The scheduler never has more than DETECT_QUEUE_CAPACITY jobs in flight
+                        detectStage.execute(() -> processFrame(job));
+                    }
+
+                    @Override
+                    public void onDiscarded(CapturedFrame frame) {
+                        // Superseded or stale before detection started
+                        lastSubmittedSignatureValid = false;
+                        frame.unpin(bitmapPool);
+                    }
+                });
+
+        cadenceGovernor = new CadenceGovernor(frameScheduler);
+        registerThermalListener();
 
         // Initialize detection handler (Team B)
         DetectionHandler.initialize(this);
@@ -68,6 +182,42 @@ public class ScreenCaptureService extends Service {
         Log.d(TAG, "Screen dimensions: " + screenWidth + "x" + screenHeight + " density: " + screenDensity);
     }
 
+    /**
+     * Switches the capture resolution of a running capture to the nearest ladder step.
+     * Ignored when no projection is active; use {@link #EXTRA_CAPTURE_SCALE} to start at a scale.
+     * The service also steps down on its own while the device is hot.
+     */
+    public static void setCaptureScale(float scale) {
+        ScreenCaptureService service = running;
+        if (service == null) {
+            Log.w(TAG, "No capture running - ignoring capture scale " + scale);
+            return;
+        }
+        service.requestedScale = snapToLadder(scale);
+        service.updateCaptureScale();
+    }
+
+    private void updateCaptureScale() {
+        captureStage.getHandler().post(() -> applyCaptureScale(effectiveScale()));
+    }
+
+    // One ladder step below the requested scale at MODERATE thermal status, two at SEVERE
+    private float effectiveScale() {
+        int status = thermalStatus;
+        int steps = status >= PowerManager.THERMAL_STATUS_SEVERE ? 2
+                : status >= PowerManager.THERMAL_STATUS_MODERATE ? 1 : 0;
+        int index = 0;
+        while (CAPTURE_SCALE_LADDER[index] != requestedScale) index++;
+        return CAPTURE_SCALE_LADDER[Math.min(CAPTURE_SCALE_LADDER.length - 1, index + steps)];
+    }
+
+    // Benchmarks the face backends on the next changed frames; the pick applies from the next capture
+    private void benchmarkFaceBackends() {
+        captureStage.getHandler().post(() -> {
+            if (benchmarkFrames == null) benchmarkFrames = new ArrayList<>(BENCHMARK_FRAMES);
+        });
+    }
+
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         int resultCode = intent.getIntExtra("resultCode", -1);
@@ -78,6 +228,16 @@ public class ScreenCaptureService extends Service {
 
         if (projectionManager != null && data != null) {
             mediaProjection = projectionManager.getMediaProjection(resultCode, data);
+            requestedScale = snapToLadder(intent.getFloatExtra(EXTRA_CAPTURE_SCALE, DEFAULT_CAPTURE_SCALE));
+            captureScale = effectiveScale();
+            maskStyle = MaskingUtils.MaskStyle.fromName(intent.getStringExtra(EXTRA_MASK_STYLE), maskStyle);
+            String faceBackend = intent.getStringExtra(EXTRA_FACE_BACKEND);
+            if (faceBackend != null) DetectionHandler.setFaceBackend(faceBackend);
+            // Once per install, on the first capture
+            if (!FaceBackendBenchmark.hasRecommendation(this)) benchmarkFaceBackends();
+            if (intent.getBooleanExtra(EXTRA_OVERLAY_MASKS, false)) {
+                showMaskOverlay();
+            }
             initVirtualDisplay();
         } else {
             Log.e(TAG, "Failed to get MediaProjection - resultCode: " + resultCode + " data: " + data);
@@ -103,55 +263,231 @@ public class ScreenCaptureService extends Service {
                     imageReader = null;
                 }
                 mediaProjection = null;
+                if (running == ScreenCaptureService.this) running = null;
                 stopSelf();
             }
-        }, handler);
+        }, captureStage.getHandler());
 
-        imageReader = ImageReader.newInstance(screenWidth, screenHeight, PixelFormat.RGBA_8888, 2);
+        int width = scaledSize(screenWidth, captureScale);
+        int height = scaledSize(screenHeight, captureScale);
+        imageReader = createImageReader(width, height);
 
-        mediaProjection.createVirtualDisplay(
+        virtualDisplay = mediaProjection.createVirtualDisplay(
                 "AutoPrivacyShield-ScreenCapture",
-                screenWidth,
-                screenHeight,
-                screenDensity,
+                width,
+                height,
+                scaledDensity(captureScale),
                 0,
                 imageReader.getSurface(),
                 null,
-                handler);
+                captureStage.getHandler());
 
-        imageReader.setOnImageAvailableListener(reader -> {
-            Image image = null;
-            try {
-                image = reader.acquireLatestImage();
-                if (image != null) {
-                    Bitmap bitmap = ImageUtils.imageToBitmap(image);
-                    image.close();
+        Log.d(TAG, "VirtualDisplay initialized successfully at " + width + "x" + height
+                + " (scale " + captureScale + ")");
+        running = this;
+    }
+
+    private ImageReader createImageReader(int width, int height) {
+        ImageReader reader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 2);
+        reader.setOnImageAvailableListener(this::onImageAvailable, captureStage.getHandler());
+        return reader;
+    }
 
-                    if (bitmap != null) {
-                        currentFrameBitmap = bitmap;
-                        Log.d(TAG, "Captured frame size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+    /**
+     * Resizes the virtual display and swaps in a reader of the new size, keeping the
+     * projection running. Runs on the capture thread, like the reader's listener.
+     */
+    private void applyCaptureScale(float scale) {
+        if (virtualDisplay == null || scale == captureScale) return;
+
+        int width = scaledSize(screenWidth, scale);
+        int height = scaledSize(screenHeight, scale);
+        ImageReader previous = imageReader;
+        imageReader = createImageReader(width, height);
+        virtualDisplay.resize(width, height, scaledDensity(scale));
+        virtualDisplay.setSurface(imageReader.getSurface());
+        if (previous != null) previous.close();
+
+        captureScale = scale;
+        lastSubmittedSignatureValid = false;
+        Log.d(TAG, "Capture scale " + scale + " -> " + width + "x" + height);
+    }
+
+    private static float snapToLadder(float scale) {
+        float nearest = CAPTURE_SCALE_LADDER[0];
+        for (float step : CAPTURE_SCALE_LADDER) {
+            if (Math.abs(step - scale) < Math.abs(nearest - scale)) nearest = step;
+        }
+        return nearest;
+    }
 
-                        // Process with Team B detection + masking
-                        processFrame(bitmap);
+    // Even sizes keep the YUV/RGBA buffers happy on every device
+    private static int scaledSize(int size, float scale) {
+        return Math.max(2, Math.round(size * scale) & ~1);
+    }
+
+    private int scaledDensity(float scale) {
+        return Math.max(1, Math.round(screenDensity * scale));
+    }
+
+    // Acquire and convert on the capture thread so the Image is closed right away;
+    // the next frame converts here while the previous one is still in detection.
+    private void onImageAvailable(ImageReader reader) {
+        long start = System.nanoTime();
+        Image image = null;
+        try {
+            image = reader.acquireLatestImage();
+            if (image != null) {
+                capturedFrames++;
+                if (capturedFrames % STATS_LOG_INTERVAL == 0) {
+                    logPipelineStats();
+                }
+
+                boolean scrolled = scrollTracker.update(image) && scrollTracker.getLastShift() != 0;
+                followMasks(publishedMasks, false);
+
+                // Conversion also signs the frame, so every pixel is compared without a second pass
+                Bitmap bitmap = convertImage(image);
+                image.close();
+                if (bitmap == null) return;
+                // This frame is newer than any held one, whatever happens to it
+                dropHeldFrame();
+
+                boolean changed = !lastSubmittedSignatureValid || !frameSignature.sameAs(lastSubmittedSignature);
+                if (changed && scrolled && trackedSinceSubmit < MAX_TRACKED_FRAMES && canTrackMasks()) {
+                    // Pure scroll: the moved masks cover it until detection catches up. Held so
+                    // the position the scroll stops at is detected once frames stop arriving.
+                    trackedFrames++;
+                    trackedSinceSubmit++;
+                    holdFrame(bitmap, Math.max(SCROLL_SETTLE_MS, cadenceGovernor.timeUntilNextChangeMs()));
+                    return;
+                }
+                if (!cadenceGovernor.shouldProcess(changed)) {
+                    // Unchanged screen: the published detections and masks still apply.
+                    // Changed but too soon: held until the governor allows, unless a later
+                    // frame replaces it first.
+                    if (changed) {
+                        throttledFrames++;
+                        holdFrame(bitmap, cadenceGovernor.timeUntilNextChangeMs());
+                    } else {
+                        unchangedFrames++;
+                        bitmapPool.release(bitmap);
                     }
+                    return;
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Error capturing frame", e);
+
+                Log.d(TAG, "Captured frame size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+                frameSignature = submitFrame(new CapturedFrame(bitmap,
+                        scrollTracker.getPosition(), scrollTracker.getEpoch()), frameSignature);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error capturing frame", e);
+        } finally {
+            if (image != null) image.close();
+            captureStage.recordWork(start);
+        }
+    }
+
+    // Capture thread only. Copies are owned by the benchmark and recycled when it finishes.
+    private void collectBenchmarkFrame(Bitmap bitmap) {
+        benchmarkFrames.add(bitmap.copy(Bitmap.Config.ARGB_8888, false));
+        if (benchmarkFrames.size() < BENCHMARK_FRAMES) return;
+
+        List<Bitmap> frames = benchmarkFrames;
+        benchmarkFrames = null;
+        new Thread(() -> {
+            try {
+                FaceBackendBenchmark.recommend(this, FaceBackendBenchmark.run(this, frames));
             } finally {
-                if (image != null) image.close();
+                for (Bitmap frame : frames) frame.recycle();
             }
-        }, handler);
+        }, "APS-face-benchmark").start();
+    }
+
+    // Hands the frame to detection (latest frame wins) and makes signature the last submitted
+    // one; returns the signature it replaced, for reuse
+    private FrameSignature submitFrame(CapturedFrame frame, FrameSignature signature) {
+        if (benchmarkFrames != null) collectBenchmarkFrame(frame.bitmap);
 
-        Log.d(TAG, "VirtualDisplay initialized successfully");
+        frame.signature.copyFrom(signature);
+        FrameSignature replaced = lastSubmittedSignature;
+        lastSubmittedSignature = signature;
+        lastSubmittedSignatureValid = true;
+        trackedSinceSubmit = 0;
+
+        // Process with Team B detection + masking
+        frameScheduler.submit(frame);
+        return replaced;
+    }
+
+    // ===== Held frames =====
+
+    // Keeps the just-converted frame, signed in frameSignature, and re-checks it after delayMs
+    private void holdFrame(Bitmap bitmap, long delayMs) {
+        FrameSignature signature = frameSignature;
+        frameSignature = heldSignature;
+        heldSignature = signature;
+        heldFrame = new CapturedFrame(bitmap, scrollTracker.getPosition(), scrollTracker.getEpoch());
+        captureStage.getHandler().postDelayed(recheckHeldFrame, delayMs);
     }
 
-    private void processFrame(Bitmap originalFrame) {
-        Bitmap frameCopy = originalFrame.copy(originalFrame.getConfig(), false);
+    private void dropHeldFrame() {
+        if (heldFrame == null) return;
+        captureStage.getHandler().removeCallbacks(recheckHeldFrame);
+        heldFrame.unpin(bitmapPool);
+        heldFrame = null;
+    }
+
+    // No newer frame arrived: the held one is what the screen shows now
+    private void recheckHeldFrame() {
+        if (heldFrame == null) return;
+        if (!cadenceGovernor.shouldProcess(true)) {
+            captureStage.getHandler().postDelayed(recheckHeldFrame, cadenceGovernor.timeUntilNextChangeMs());
+            return;
+        }
+        CapturedFrame frame = heldFrame;
+        heldFrame = null;
+        heldSignature = submitFrame(frame, heldSignature);
+    }
+
+    // Writes the visible pixels straight into a pooled bitmap and signs them into frameSignature;
+    // returns null for unsupported formats
+    private Bitmap convertImage(Image image) {
+        Bitmap bitmap = bitmapPool.acquire(image.getWidth(), image.getHeight(), Bitmap.Config.ARGB_8888);
+        convertRow = ImageUtils.ensureRow(convertRow, image.getWidth());
+        if (!ImageUtils.imageToBitmap(image, bitmap, convertRow, frameSignature)) {
+            Log.w(TAG, "Unsupported capture format: " + image.getFormat());
+            bitmapPool.release(bitmap);
+            return null;
+        }
+        return bitmap;
+    }
+
+    // The job's frame keeps its scheduler slot and its pin until every detector has returned,
+    // even one that timed out and is still reading it
+    private void processFrame(FrameScheduler.Job<CapturedFrame> job) {
+        Bitmap frame = job.frame.bitmap;
+
+        if (overlayView != null) {
+            processFrameForOverlay(job);
+            return;
+        }
 
-        DetectionHandler.processBitmap(frameCopy, new DetectionHandler.ProcessingCallback() {
+        DetectionHandler.processBitmap(frame, bitmapPool, maskStyle, maskStage, new DetectionHandler.ProcessingCallback() {
             @Override
-            public void onProcessingComplete(Bitmap processedBitmap, Rect[] sensitiveAreas) {
-                processedFrameBitmap = processedBitmap;
+            public void onProcessingComplete(Bitmap processedBitmap, DetectionBuffer results) {
+                if (!frameScheduler.deliver(job)) {
+                    Log.d(TAG, "Dropped stale result for frame #" + job.sequence);
+                    lastSubmittedSignatureValid = false;
+                    if (processedBitmap != frame) bitmapPool.release(processedBitmap);
+                    return;
+                }
+                // Missing detections (a model still loading, a timeout): detect the same screen again
+                if (!DetectionHandler.isLastResultComplete()) lastSubmittedSignatureValid = false;
+                // The buffer is reused after this call; the published masks keep their own boxes
+                Rect[] sensitiveAreas = results.sensitiveBoxes();
+                publishFrame(job.frame, processedBitmap, new TrackedMasks(sensitiveAreas, job.frame,
+                        frame.getWidth(), frame.getHeight()));
 
                 if (sensitiveAreas.length > 0) {
                     Log.d(TAG, "Frame processed with " + sensitiveAreas.length + " sensitive areas masked");
@@ -159,7 +495,196 @@ public class ScreenCaptureService extends Service {
                     Log.d(TAG, "Frame processed - no sensitive content detected");
                 }
             }
-        });
+        }, () -> releaseJob(job));
+    }
+
+    // Overlay mode: only the rect list is published; the frame goes back to the pool once
+    // every detector has returned
+    private void processFrameForOverlay(FrameScheduler.Job<CapturedFrame> job) {
+        Bitmap frame = job.frame.bitmap;
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+
+        DetectionHandler.detectSensitiveAreas(frame, maskStage, results -> {
+            if (!frameScheduler.deliver(job)) {
+                Log.d(TAG, "Dropped stale result for frame #" + job.sequence);
+                lastSubmittedSignatureValid = false;
+                return;
+            }
+            if (!DetectionHandler.isLastResultComplete()) lastSubmittedSignatureValid = false;
+
+            Rect[] masks = withRetainedMasks(
+                    MaskingUtils.coalesce(results, DetectionHandler.MASK_PADDING, width, height),
+                    job.frame, width, height);
+            publishedMasks = new TrackedMasks(masks, job.frame, width, height);
+            followMasks(publishedMasks, true);
+        }, () -> releaseJob(job));
+    }
+
+    private void releaseJob(FrameScheduler.Job<CapturedFrame> job) {
+        frameScheduler.release(job);
+        job.frame.unpin(bitmapPool);
+    }
+
+    /**
+     * Captures include the overlay, so content under a mask can no longer be detected.
+     * Earlier masks are therefore kept, moved with the scroll, while scroll tracking holds;
+     * newly detected areas are added to them. Without a scroll in between, a kept mask is
+     * dropped once a tile it overlaps changed: the content around it was replaced.
+     */
+    private Rect[] withRetainedMasks(Rect[] detected, CapturedFrame frame, int width, int height) {
+        TrackedMasks previous = publishedMasks;
+        if (previous == null || previous.trackingEpoch != frame.trackingEpoch) return detected;
+
+        Rect[] retained = frame.scrollPosition == previous.scrollPosition
+                ? unchangedAreas(previous.frameAreas, previous.signature, frame.signature)
+                // Tiles do not line up across a scroll; the masks move with the content
+                : ScrollTracker.shift(previous.frameAreas, frame.scrollPosition - previous.scrollPosition);
+        Rect[] all = Arrays.copyOf(detected, detected.length + retained.length);
+        System.arraycopy(retained, 0, all, detected.length, retained.length);
+        return MaskingUtils.coalesce(all, 0, width, height);
+    }
+
+    private static Rect[] unchangedAreas(Rect[] areas, FrameSignature before, FrameSignature after) {
+        // A different capture size: the areas are in the old frame's pixels
+        if (!after.hasSameGeometry(before)) return new Rect[0];
+
+        List<Rect> unchanged = new ArrayList<>(areas.length);
+        for (Rect area : areas) {
+            if (!after.isAreaChanged(before, area.left, area.top, area.right, area.bottom)) unchanged.add(area);
+        }
+        return unchanged.toArray(new Rect[0]);
+    }
+
+    // Runs on the mask stage only, so publishing is serialised
+    private void publishFrame(CapturedFrame frame, Bitmap processed, TrackedMasks masks) {
+        CapturedFrame previousFrame = publishedFrame;
+        Bitmap previousProcessed = processedFrameBitmap;
+        frame.pin();
+        publishedFrame = frame;
+        currentFrameBitmap = frame.bitmap;
+        processedFrameBitmap = processed;
+        publishedMasks = masks;
+        followMasks(masks, true);
+        if (previousFrame != null) {
+            if (previousProcessed != previousFrame.bitmap) bitmapPool.release(previousProcessed);
+            previousFrame.unpin(bitmapPool);
+        }
+    }
+
+    // ===== Mask tracking =====
+
+    private boolean canTrackMasks() {
+        TrackedMasks masks = publishedMasks;
+        return masks != null && masks.trackingEpoch == scrollTracker.getEpoch();
+    }
+
+    /**
+     * Moves the published masks by the scroll measured since their frame was captured.
+     * Once tracking is lost the capture thread leaves them where they are; a newly
+     * published result is always shown, unshifted if it cannot be tracked.
+     */
+    private void followMasks(TrackedMasks masks, boolean publishing) {
+        if (masks == null) return;
+
+        Rect[] frameAreas = masks.frameAreas;
+        if (masks.trackingEpoch == scrollTracker.getEpoch()) {
+            int dy = scrollTracker.getPosition() - masks.scrollPosition;
+            if (dy != 0) frameAreas = ScrollTracker.shift(frameAreas, dy);
+        } else if (!publishing) {
+            return;
+        }
+
+        Rect[] screenAreas = toScreenCoordinates(frameAreas, masks.frameWidth, masks.frameHeight);
+        synchronized (screenAreasLock) {
+            // A newer result may have been published meanwhile
+            if (masks != publishedMasks) return;
+            sensitiveScreenAreas = screenAreas;
+            MaskOverlayView overlay = overlayView;
+            if (overlay != null) overlay.setMasks(screenAreas);
+        }
+    }
+
+    // Frame boxes are in capture pixels; the frame's own size tells which scale it was taken at
+    private Rect[] toScreenCoordinates(Rect[] areas, int frameWidth, int frameHeight) {
+        float scaleX = screenWidth / (float) frameWidth;
+        float scaleY = screenHeight / (float) frameHeight;
+        Rect[] screenAreas = new Rect[areas.length];
+        for (int i = 0; i < areas.length; i++) {
+            Rect area = areas[i];
+            screenAreas[i] = new Rect(
+                    (int) Math.floor(area.left * scaleX),
+                    (int) Math.floor(area.top * scaleY),
+                    (int) Math.ceil(area.right * scaleX),
+                    (int) Math.ceil(area.bottom * scaleY));
+        }
+        return screenAreas;
+    }
+
+    private void logPipelineStats() {
+        long captured = capturedFrames;
+        long unchanged = unchangedFrames;
+        long throttled = throttledFrames;
+        long tracked = trackedFrames;
+        Log.d(TAG, "Frames captured=" + captured + " unchanged=" + unchanged + " throttled=" + throttled
+                + " tracked=" + tracked
+                + " skipRate=" + (captured == 0 ? 0 : (unchanged + throttled + tracked) * 100 / captured) + "%");
+        Log.d(TAG, "Cadence: " + cadenceGovernor.describeStats());
+        Log.d(TAG, "Frame scheduler: " + frameScheduler.describeStats());
+        Log.d(TAG, captureStage.describeStats());
+        Log.d(TAG, detectStage.describeStats());
+        Log.d(TAG, maskStage.describeStats());
+        Log.d(TAG, "Bitmap pool: " + bitmapPool.describeStats());
+    }
+
+    // ===== Overlay masking =====
+
+    // Main thread. Without the overlay permission the service keeps rendering masked bitmaps.
+    private void showMaskOverlay() {
+        if (overlayView != null) return;
+        if (!Settings.canDrawOverlays(this)) {
+            Log.w(TAG, "Overlay permission not granted - falling back to masked bitmaps");
+            return;
+        }
+
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                        | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS,
+                PixelFormat.TRANSLUCENT);
+
+        MaskOverlayView view = new MaskOverlayView(this);
+        ((WindowManager) getSystemService(WINDOW_SERVICE)).addView(view, params);
+        overlayView = view;
+        Log.d(TAG, "Mask overlay shown");
+    }
+
+    private void hideMaskOverlay() {
+        MaskOverlayView view = overlayView;
+        if (view == null) return;
+        overlayView = null;
+        ((WindowManager) getSystemService(WINDOW_SERVICE)).removeView(view);
+    }
+
+    // Thermal status needs API 29; older devices keep the unthrottled cadence
+    private void registerThermalListener() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return;
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        if (powerManager == null) return;
+
+        thermalListener = status -> {
+            Log.d(TAG, "Thermal status changed: " + status);
+            cadenceGovernor.setThermalStatus(status);
+            thermalStatus = status;
+            updateCaptureScale();
+        };
+        thermalStatus = powerManager.getCurrentThermalStatus();
+        cadenceGovernor.setThermalStatus(thermalStatus);
+        powerManager.addThermalStatusListener(thermalListener);
     }
 
     public Bitmap getCurrentFrame() {
@@ -170,6 +695,14 @@ public class ScreenCaptureService extends Service {
         return currentFrameBitmap;
     }
 
+    /**
+     * Masked areas of the published frame, moved along with any scroll since it was captured;
+     * in screen pixels whatever the capture scale.
+     */
+    public Rect[] getSensitiveAreas() {
+        return sensitiveScreenAreas;
+    }
+
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
@@ -180,15 +713,92 @@ public class ScreenCaptureService extends Service {
     public void onDestroy() {
         super.onDestroy();
         Log.d(TAG, "ScreenCaptureService destroyed");
+        if (running == this) running = null;
+
+        if (frameScheduler != null) {
+            frameScheduler.cancelPending();
+            logPipelineStats();
+        }
+
+        hideMaskOverlay();
+
+        if (thermalListener != null) {
+            PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+            if (powerManager != null) powerManager.removeThermalStatusListener(thermalListener);
+            thermalListener = null;
+        }
 
         if (mediaProjection != null) {
             mediaProjection.stop();
             mediaProjection = null;
         }
 
-        if (imageReader != null) {
-            imageReader.close();
-            imageReader = null;
+        // Release the display and close the reader on the capture thread, which owns them,
+        // so they cannot race an in-progress frame or a scale change
+        captureStage.getHandler().post(() -> {
+            dropHeldFrame();
+            if (virtualDisplay != null) {
+                virtualDisplay.release();
+                virtualDisplay = null;
+            }
+            if (imageReader != null) {
+                imageReader.close();
+                imageReader = null;
+            }
+        });
+
+        // After any queued detections; the registry frees the models once they stay idle
+        detectStage.getHandler().post(DetectionHandler::release);
+
+        captureStage.quit();
+        detectStage.quit();
+        maskStage.quit();
+
+        // Frames still in flight are recycled when their stage releases them
+        bitmapPool.close();
+    }
+
+    // A converted frame and where the scroll tracker stood when it was captured. The
+    // pipeline holds one pin, publishing another; the bitmap goes back to the pool with the last.
+    private static final class CapturedFrame {
+        final Bitmap bitmap;
+        final int scrollPosition;
+        final int trackingEpoch;
+        // Copy of the frame's signature, taken when it is submitted
+        final FrameSignature signature = new FrameSignature();
+        private final AtomicInteger pins = new AtomicInteger(1);
+
+        CapturedFrame(Bitmap bitmap, int scrollPosition, int trackingEpoch) {
+            this.bitmap = bitmap;
+            this.scrollPosition = scrollPosition;
+            this.trackingEpoch = trackingEpoch;
+        }
+
+        void pin() {
+            pins.incrementAndGet();
+        }
+
+        void unpin(BitmapPool pool) {
+            if (pins.decrementAndGet() == 0) pool.release(bitmap);
+        }
+    }
+
+    // Detected areas of a published frame, in that frame's pixels
+    private static final class TrackedMasks {
+        final Rect[] frameAreas;
+        final int scrollPosition;
+        final int trackingEpoch;
+        final FrameSignature signature;
+        final int frameWidth;
+        final int frameHeight;
+
+        TrackedMasks(Rect[] frameAreas, CapturedFrame frame, int frameWidth, int frameHeight) {
+            this.frameAreas = frameAreas;
+            this.scrollPosition = frame.scrollPosition;
+            this.trackingEpoch = frame.trackingEpoch;
+            this.signature = frame.signature;
+            this.frameWidth = frameWidth;
+            this.frameHeight = frameHeight;
         }
     }
 
@@ -0,0 +1,142 @@
+package com.example.autoprivacyshield;
+
+import android.graphics.Rect;
+import android.media.Image;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Estimates the global vertical scroll between consecutive captured frames by matching
+ * per-row hashes, and keeps a running scroll position so masks detected on an older frame
+ * can be moved onto the current one.
+ *
+ * Flat rows (same hash as the row above) match at any offset and are ignored. When no
+ * offset explains enough of the remaining rows the tracking epoch changes: positions from
+ * different epochs cannot be compared.
+ *
+ * {@link #update} must be called from one thread; the position and epoch may be read from any.
+ */
+public class ScrollTracker {
+    private static final int SAMPLE_STEP_X = 8;
+    private static final int ROW_STEP = 4;
+    private static final float MIN_CONFIDENCE = 0.6f;
+    private static final int MIN_TEXTURED_ROWS = 16;
+
+    private int[] rowHashes = new int[0];
+    private int[] previousRowHashes = new int[0];
+    private int width;
+    private int height;
+    private boolean hasPrevious;
+
+    private int lastShift;
+    private float lastConfidence;
+    private volatile int position;
+    private volatile int epoch;
+
+    /**
+     * Hashes the rows of the image's first plane and estimates the shift from the previous frame.
+     *
+     * @return true if the shift is trusted; false starts a new tracking epoch
+     */
+    public boolean update(Image image) {
+        Image.Plane plane = image.getPlanes()[0];
+        hashRows(plane.getBuffer(), plane.getRowStride(), plane.getPixelStride(),
+                image.getWidth(), image.getHeight());
+
+        boolean tracked = hasPrevious && estimateShift();
+        if (tracked) {
+            position += lastShift;
+        } else {
+            lastShift = 0;
+            epoch++;
+        }
+        hasPrevious = true;
+
+        int[] swap = previousRowHashes;
+        previousRowHashes = rowHashes;
+        rowHashes = swap;
+        return tracked;
+    }
+
+    /** Content movement of the last trusted update, in frame pixels (positive = moved down). */
+    public int getLastShift() {
+        return lastShift;
+    }
+
+    public float getLastConfidence() {
+        return lastConfidence;
+    }
+
+    /** Sum of trusted shifts; only differences within one epoch are meaningful. */
+    public int getPosition() {
+        return position;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /** Copies of {@code areas} moved down by {@code dy} pixels. */
+    public static Rect[] shift(Rect[] areas, int dy) {
+        Rect[] shifted = new Rect[areas.length];
+        for (int i = 0; i < areas.length; i++) {
+            shifted[i] = new Rect(areas[i]);
+            shifted[i].offset(0, dy);
+        }
+        return shifted;
+    }
+
+    private void hashRows(ByteBuffer buffer, int rowStride, int pixelStride, int width, int height) {
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            rowHashes = new int[height];
+            previousRowHashes = new int[height];
+            hasPrevious = false;
+        }
+
+        boolean wholePixels = pixelStride >= 4;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * rowStride;
+            int hash = 1;
+            for (int x = 0; x < width; x += SAMPLE_STEP_X) {
+                int offset = rowStart + x * pixelStride;
+                hash = 31 * hash + (wholePixels ? buffer.getInt(offset) : buffer.get(offset));
+            }
+            rowHashes[y] = hash;
+        }
+    }
+
+    // Tries offsets 0, -1, 1, -2, 2... up to a quarter of the height; ties keep the smaller one
+    private boolean estimateShift() {
+        int maxShift = height / 4;
+        int bestShift = 0;
+        float bestScore = -1f;
+
+        for (int i = 0; i <= 2 * maxShift; i++) {
+            int dy = (i & 1) == 1 ? -((i + 1) / 2) : i / 2;
+            int matches = 0;
+            int compared = 0;
+            for (int y = 0; y < height; y += ROW_STEP) {
+                int source = y - dy;
+                if (source < 1 || source >= height) continue;
+                int before = previousRowHashes[source];
+                if (before == previousRowHashes[source - 1]) continue;
+                compared++;
+                if (rowHashes[y] == before) matches++;
+            }
+            if (compared < MIN_TEXTURED_ROWS) continue;
+
+            float score = matches / (float) compared;
+            if (score > bestScore) {
+                bestScore = score;
+                bestShift = dy;
+                if (score == 1f) break;
+            }
+        }
+
+        lastConfidence = Math.max(0f, bestScore);
+        lastShift = bestShift;
+        return bestScore >= MIN_CONFIDENCE;
+    }
+}
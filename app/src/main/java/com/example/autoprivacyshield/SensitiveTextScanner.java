@@ -0,0 +1,306 @@
+package com.example.autoprivacyshield;
+
+/**
+ * Single-pass scanner for the PII families used across the app (email, card,
+ * Aadhaar, PAN, phone, OTP and the otp/password/pin keywords), plus the stricter
+ * whole-token families DetectionUtils uses to classify OCR blocks.
+ *
+ * The input is walked once, left to right, with a small bounded look-ahead at
+ * digit-run starts, '+' and '@'. Matches follow the same leftmost,
+ * non-overlapping semantics per family as the regexes they replace
+ * (e.g. EMAIL = [a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\.[a-zA-Z]{2,}).
+ * Nothing is allocated per call; spans are reported to a {@link SpanSink}.
+ */
+public final class SensitiveTextScanner {
+
+    // ===== Family bits =====
+    public static final int EMAIL = 1;                 // [a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\.[a-zA-Z]{2,}
+    public static final int CARD = 1 << 1;             // \b\d{4}([- ]?\d{4}){3}\b
+    public static final int AADHAAR = 1 << 2;          // \b\d{4}\s?\d{4}\s?\d{4}\b
+    public static final int PAN = 1 << 3;              // [A-Z]{5}[0-9]{4}[A-Z]
+    public static final int PHONE = 1 << 4;            // (?:\+91[-\s]?)?[6-9]\d{9}
+    public static final int OTP = 1 << 5;              // \b\d{4,8}\b
+    public static final int KEYWORD_OTP = 1 << 6;      // "otp", case-insensitive (first occurrence)
+    public static final int KEYWORD_PASSWORD = 1 << 7; // "password", case-insensitive (first occurrence)
+    public static final int KEYWORD_PIN = 1 << 8;      // "pin", case-insensitive (first occurrence)
+
+
+    // Whole-token families (word boundaries on both sides)
+    public static final int DIGITS_12 = 1 << 9;        // \b\d{12}\b
+    public static final int DIGITS_10 = 1 << 10;       // \b\d{10}\b
+    public static final int DIGITS_4 = 1 << 11;        // \b\d{4}\b
+    public static final int PAN_WORD = 1 << 12;        // \b[A-Z]{5}[0-9]{4}[A-Z]\b
+    public static final int DATE = 1 << 13;            // \b\d{2}/\d{2}/\d{4}\b or \b\d{4}-\d{2}-\d{2}\b
+
+    public static final int KEYWORDS = KEYWORD_OTP | KEYWORD_PASSWORD | KEYWORD_PIN;
+    public static final int PATTERNS = EMAIL | CARD | AADHAAR | PAN | PHONE | OTP;
+    public static final int ALL = PATTERNS | KEYWORDS;
+
+    private SensitiveTextScanner() {
+    }
+
+    /** Receives each match as it is recognised. */
+    public interface SpanSink {
+        void onSpan(int family, int start, int end);
+    }
+
+    /** Returns the bit set of families present in {@code text}. */
+    public static int scan(CharSequence text, int families) {
+        return scan(text, families, null, 0);
+    }
+
+    /** Reports every match of the requested families to {@code sink}; returns the families found. */
+    public static int scan(CharSequence text, int families, SpanSink sink) {
+        return scan(text, families, sink, 0);
+    }
+
+    /** True as soon as any of the requested families is found. */
+    public static boolean containsAny(CharSequence text, int families) {
+        return scan(text, families, null, families) != 0;
+    }
+
+    // ===== Scanner core =====
+    private static int scan(CharSequence text, int families, SpanSink sink, int stopMask) {
+        if (text == null) return 0;
+        final int n = text.length();
+        int found = 0;
+
+        // Each family resumes after its previous match, like Matcher.find()
+        int emailFrom = 0, cardFrom = 0, aadhaarFrom = 0, panFrom = 0, phoneFrom = 0;
+        int digitStart = -1;
+        int localStart = -1;
+        int upperRun = 0;
+
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? text.charAt(i) : '\0';
+            boolean digit = i < n && isDigit(c);
+
+            if (digit && digitStart < 0) {
+                digitStart = i;
+                boolean bounded = i == 0 || !isWordChar(text.charAt(i - 1));
+
+                if (bounded && (families & CARD) != 0 && i >= cardFrom) {
+                    int end = matchDigitGroups(text, i, 4, false);
+                    if (end > 0) {
+                        found |= emit(sink, CARD, i, end);
+                        cardFrom = end;
+                    }
+                }
+                if (bounded && (families & AADHAAR) != 0 && i >= aadhaarFrom) {
+                    int end = matchDigitGroups(text, i, 3, true);
+                    if (end > 0) {
+                        found |= emit(sink, AADHAAR, i, end);
+                        aadhaarFrom = end;
+                    }
+                }
+                if (bounded && (families & DATE) != 0) {
+                    int end = matchDate(text, i);
+                    if (end > 0) found |= emit(sink, DATE, i, end);
+                }
+                if ((families & (PAN | PAN_WORD)) != 0 && upperRun >= 5
+                        && i + 5 <= n && isDigitRun(text, i, 4) && isUpper(text.charAt(i + 4))) {
+                    if ((families & PAN) != 0 && i - 5 >= panFrom) {
+                        found |= emit(sink, PAN, i - 5, i + 5);
+                        panFrom = i + 5;
+                    }
+                    if ((families & PAN_WORD) != 0 && upperRun == 5
+                            && (i == 5 || !isWordChar(text.charAt(i - 6)))
+                            && (i + 5 == n || !isWordChar(text.charAt(i + 5)))) {
+                        found |= emit(sink, PAN_WORD, i - 5, i + 5);
+                    }
+                }
+            } else if (!digit && digitStart >= 0) {
+                int runLength = i - digitStart;
+                boolean boundedRun = (digitStart == 0 || !isWordChar(text.charAt(digitStart - 1)))
+                        && (i == n || !isWordChar(c));
+                if (boundedRun) {
+                    if ((families & OTP) != 0 && runLength >= 4 && runLength <= 8) {
+                        found |= emit(sink, OTP, digitStart, i);
+                    }
+                    int exact = runLength == 12 ? DIGITS_12
+                            : runLength == 10 ? DIGITS_10
+                            : runLength == 4 ? DIGITS_4 : 0;
+                    if ((families & exact) != 0) {
+                        found |= emit(sink, exact, digitStart, i);
+                    }
+                }
+                if ((families & PHONE) != 0) {
+                    int j = Math.max(digitStart, phoneFrom);
+                    while (j + 10 <= i) {
+                        char lead = text.charAt(j);
+                        if (lead >= '6' && lead <= '9') {
+                            found |= emit(sink, PHONE, j, j + 10);
+                            j += 10;
+                            phoneFrom = j;
+                        } else {
+                            j++;
+                        }
+                    }
+                }
+                digitStart = -1;
+            }
+
+            if ((found & stopMask) != 0) return found;
+            if (i == n) break;
+
+            if (c == '+' && (families & PHONE) != 0 && i >= phoneFrom) {
+                int end = matchPrefixedPhone(text, i);
+                if (end > 0) {
+                    found |= emit(sink, PHONE, i, end);
+                    phoneFrom = end;
+                }
+            }
+
+            if (c == '@') {
+                if ((families & EMAIL) != 0 && localStart >= 0) {
+                    int start = Math.max(localStart, emailFrom);
+                    int end = start < i ? matchEmailDomain(text, i + 1) : -1;
+                    if (end > 0) {
+                        found |= emit(sink, EMAIL, start, end);
+                        emailFrom = end;
+                    }
+                }
+                localStart = -1;
+            } else if (isEmailLocalChar(c)) {
+                if (localStart < 0) localStart = i;
+            } else {
+                localStart = -1;
+            }
+
+            upperRun = isUpper(c) ? upperRun + 1 : 0;
+
+            int lower = c | 0x20;
+            if (lower == 'o' && (families & KEYWORD_OTP & ~found) != 0 && regionMatchesLower(text, i, "otp")) {
+                found |= emit(sink, KEYWORD_OTP, i, i + 3);
+            } else if (lower == 'p') {
+                if ((families & KEYWORD_PASSWORD & ~found) != 0 && regionMatchesLower(text, i, "password")) {
+                    found |= emit(sink, KEYWORD_PASSWORD, i, i + 8);
+                }
+                if ((families & KEYWORD_PIN & ~found) != 0 && regionMatchesLower(text, i, "pin")) {
+                    found |= emit(sink, KEYWORD_PIN, i, i + 3);
+                }
+            }
+
+            if ((found & stopMask) != 0) return found;
+        }
+        return found;
+    }
+
+    private static int emit(SpanSink sink, int family, int start, int end) {
+        if (sink != null) sink.onSpan(family, start, end);
+        return family;
+    }
+
+    /**
+     * Matches {@code groups} groups of four digits starting at {@code from}, each optionally
+     * preceded by one separator ('-' or ' ' for cards, any whitespace for Aadhaar), followed by
+     * a word boundary. Returns the end index or -1.
+     */
+    private static int matchDigitGroups(CharSequence text, int from, int groups, boolean whitespaceSeparator) {
+        final int n = text.length();
+        int p = from;
+        for (int g = 0; g < groups; g++) {
+            if (g > 0 && p < n) {
+                char sep = text.charAt(p);
+                if (whitespaceSeparator ? isWhitespace(sep) : (sep == '-' || sep == ' ')) p++;
+            }
+            if (p + 4 > n || !isDigitRun(text, p, 4)) return -1;
+            p += 4;
+        }
+        return p == n || !isWordChar(text.charAt(p)) ? p : -1;
+    }
+
+    /** Matches dd/dd/dddd or dddd-dd-dd followed by a word boundary; returns the end index or -1. */
+    private static int matchDate(CharSequence text, int from) {
+        final int n = text.length();
+        int end = from + 10;
+        if (end > n || (end < n && isWordChar(text.charAt(end)))) return -1;
+        if (text.charAt(from + 2) == '/' && text.charAt(from + 5) == '/') {
+            return isDigitRun(text, from, 2) && isDigitRun(text, from + 3, 2)
+                    && isDigitRun(text, from + 6, 4) ? end : -1;
+        }
+        if (text.charAt(from + 4) == '-' && text.charAt(from + 7) == '-') {
+            return isDigitRun(text, from, 4) && isDigitRun(text, from + 5, 2)
+                    && isDigitRun(text, from + 8, 2) ? end : -1;
+        }
+        return -1;
+    }
+
+    /** Matches "+91", an optional '-' or whitespace, then [6-9]\d{9}. */
+    private static int matchPrefixedPhone(CharSequence text, int from) {
+        final int n = text.length();
+        int p = from + 3;
+        if (p > n || text.charAt(from + 1) != '9' || text.charAt(from + 2) != '1') return -1;
+        if (p < n && (text.charAt(p) == '-' || isWhitespace(text.charAt(p)))) p++;
+        if (p + 10 > n) return -1;
+        char lead = text.charAt(p);
+        if (lead < '6' || lead > '9' || !isDigitRun(text, p + 1, 9)) return -1;
+        return p + 10;
+    }
+
+    /** Matches [a-zA-Z0-9.-]+\.[a-zA-Z]{2,} greedily from {@code from}; returns the end index or -1. */
+    private static int matchEmailDomain(CharSequence text, int from) {
+        final int n = text.length();
+        int limit = from;
+        while (limit < n && isEmailDomainChar(text.charAt(limit))) limit++;
+
+        // Last '.' (with at least one domain char before it) followed by two letters
+        for (int dot = limit - 3; dot > from; dot--) {
+            if (text.charAt(dot) == '.' && isAsciiLetter(text.charAt(dot + 1))
+                    && isAsciiLetter(text.charAt(dot + 2))) {
+                int end = dot + 3;
+                while (end < limit && isAsciiLetter(text.charAt(end))) end++;
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatchesLower(CharSequence text, int from, String lowerWord) {
+        int length = lowerWord.length();
+        if (from + length > text.length()) return false;
+        for (int k = 0; k < length; k++) {
+            char c = text.charAt(from + k);
+            if (!isAsciiLetter(c) || (c | 0x20) != lowerWord.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigitRun(CharSequence text, int from, int count) {
+        for (int k = from; k < from + count; k++) {
+            if (!isDigit(text.charAt(k))) return false;
+        }
+        return true;
+    }
+
+    // ===== Character classes =====
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /** Same notion of "word" character that java.util.regex uses for \b. */
+    static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    /** \s: [ \t\n\x0B\f\r] */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private static boolean isEmailLocalChar(char c) {
+        return isAsciiLetter(c) || isDigit(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isEmailDomainChar(char c) {
+        return isAsciiLetter(c) || isDigit(c) || c == '.' || c == '-';
+    }
+}
@@ -0,0 +1,402 @@
+package com.example.autoprivacyshield;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * OCR for images too large to hand to ML Kit whole. The image is cut into overlapping
+ * tiles of at most {@link #TILE_SIZE} pixels, which are decoded straight from the source
+ * with a region decoder and recognised a few at a time, so memory use depends on the tile
+ * size, not the image size. ML Kit never has to downscale, so small text such as card
+ * numbers keeps its resolution.
+ *
+ * Lines that cross a seam are seen by both tiles. The overlap is taller than a text line,
+ * so a line cut by a horizontal seam is whole in one of the tiles and its cut copy is
+ * dropped. A long line cut by a vertical seam is stitched back together from both halves.
+ *
+ * Small images take the same path as a single tile. Results are in upright image pixels,
+ * after EXIF rotation.
+ */
+public final class TiledTextRecognizer {
+    private static final String TAG = "TiledTextRecognizer";
+    private static final int TILE_SIZE = 1536;
+    // Taller than the text lines we expect to read, so each is whole in some tile
+    private static final int OVERLAP = 128;
+    // Tiles decoded and waiting for or inside ML Kit at once
+    private static final int MAX_TILES_IN_FLIGHT = 3;
+    // Lines this close to a cut edge are treated as cut
+    private static final int EDGE_PX = 3;
+    private static final int MIN_TEXT_OVERLAP = 2;
+    // DetectionCache configuration: results change with the model and the tiling
+    public static final String CACHE_CONFIG = "tiled-ocr/" + ModelRegistry.TEXT_RECOGNIZER + "/"
+            + TILE_SIZE + "/" + OVERLAP;
+
+    /** One recognised line, in upright image pixels. */
+    public static final class Line {
+        public final String text;
+        public final Rect box;
+        final int tile;
+
+        Line(String text, Rect box, int tile) {
+            this.text = text;
+            this.box = box;
+            this.tile = tile;
+        }
+    }
+
+    public static final class Result {
+        /** Upright image size, for mapping the boxes onto a scaled preview. */
+        public final int width;
+        public final int height;
+        public final int tiles;
+        public final int failedTiles;
+        /** Lines in reading order. */
+        public final List<Line> lines;
+
+        Result(int width, int height, int tiles, int failedTiles, List<Line> lines) {
+            this.width = width;
+            this.height = height;
+            this.tiles = tiles;
+            this.failedTiles = failedTiles;
+            this.lines = lines;
+        }
+
+        /** A result read back from {@link DetectionCache}; no tiles were recognised for it. */
+        public static Result fromCache(DetectionCache.Entry entry) {
+            List<Line> lines = new ArrayList<>(entry.results.size());
+            for (int i = 0; i < entry.results.size(); i++) {
+                lines.add(new Line(entry.results.text(i), entry.results.copyBoxTo(i, new Rect()), -1));
+            }
+            return new Result(entry.width, entry.height, 0, 0, lines);
+        }
+
+        /** Caches the lines, unless a tile failed and the result is incomplete. */
+        public void cache(DetectionCache cache, long key) {
+            if (failedTiles > 0) return;
+            DetectionBuffer buffer = new DetectionBuffer();
+            for (Line line : lines) {
+                buffer.add(line.box, 0, 0, DetectionBuffer.TYPE_TEXT, 0, line.text);
+            }
+            cache.put(key, width, height, buffer);
+        }
+    }
+
+    public interface Callback {
+        /** {@code result} is null, and {@code error} set, if the image could not be read. */
+        void onComplete(Result result, Exception error);
+    }
+
+    /** Where tiles come from; regions are in stored (unrotated) pixels. */
+    private interface TileSource {
+        int width();
+
+        int height();
+
+        Bitmap decode(Rect region);
+
+        void close();
+    }
+
+    private TiledTextRecognizer() {
+    }
+
+    /** Recognises the image at {@code uri}, decoding one tile at a time. */
+    public static void recognize(ContentResolver resolver, Uri uri, TextRecognizer recognizer,
+                                 Executor resultExecutor, Callback callback) {
+        start(() -> {
+            int rotation = BitmapUtils.exifRotation(resolver, uri);
+            BitmapRegionDecoder decoder;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                decoder = in == null ? null : BitmapRegionDecoder.newInstance(in, false);
+            }
+            if (decoder == null) throw new IOException("Cannot open " + uri);
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            TileSource source = new TileSource() {
+                @Override
+                public int width() {
+                    return decoder.getWidth();
+                }
+
+                @Override
+                public int height() {
+                    return decoder.getHeight();
+                }
+
+                @Override
+                public Bitmap decode(Rect region) {
+                    return decoder.decodeRegion(region, options);
+                }
+
+                @Override
+                public void close() {
+                    decoder.recycle();
+                }
+            };
+            return run(source, rotation, recognizer);
+        }, resultExecutor, callback);
+    }
+
+    /**
+     * Recognises an image already in memory, for sources without a Uri. Tiles are short-lived
+     * crops, so only the resolution benefits; {@code bitmap} must stay valid until the callback.
+     */
+    public static void recognize(Bitmap bitmap, TextRecognizer recognizer, Executor resultExecutor,
+                                 Callback callback) {
+        start(() -> run(new TileSource() {
+            @Override
+            public int width() {
+                return bitmap.getWidth();
+            }
+
+            @Override
+            public int height() {
+                return bitmap.getHeight();
+            }
+
+            @Override
+            public Bitmap decode(Rect region) {
+                return Bitmap.createBitmap(bitmap, region.left, region.top, region.width(), region.height());
+            }
+
+            @Override
+            public void close() {
+            }
+        }, 0, recognizer), resultExecutor, callback);
+    }
+
+    private interface Job {
+        Result run() throws Exception;
+    }
+
+    private static void start(Job job, Executor resultExecutor, Callback callback) {
+        new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            Result result = null;
+            Exception error = null;
+            try {
+                result = job.run();
+            } catch (Exception e) {
+                Log.e(TAG, "Tiled OCR failed", e);
+                error = e;
+            }
+            Result done = result;
+            Exception failure = error;
+            resultExecutor.execute(() -> callback.onComplete(done, failure));
+        }, "APS-tiled-ocr").start();
+    }
+
+    // ===== Tiling =====
+
+    private static Result run(TileSource source, int rotation, TextRecognizer recognizer) throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        int rawWidth = source.width();
+        int rawHeight = source.height();
+        boolean sideways = rotation == 90 || rotation == 270;
+        int width = sideways ? rawHeight : rawWidth;
+        int height = sideways ? rawWidth : rawHeight;
+
+        List<Rect> tiles = planTiles(width, height);
+        List<Line> lines = Collections.synchronizedList(new ArrayList<>());
+        int[] failed = new int[1];
+        Semaphore inFlight = new Semaphore(MAX_TILES_IN_FLIGHT);
+        try {
+            for (int i = 0; i < tiles.size(); i++) {
+                Rect tile = tiles.get(i);
+                inFlight.acquire();
+                Bitmap bitmap = source.decode(toStored(tile, rotation, rawWidth, rawHeight));
+                if (bitmap == null) {
+                    Log.w(TAG, "Could not decode tile " + tile);
+                    synchronized (failed) {
+                        failed[0]++;
+                    }
+                    inFlight.release();
+                    continue;
+                }
+
+                int index = i;
+                recognizer.process(InputImage.fromBitmap(bitmap, rotation))
+                        .addOnCompleteListener(Runnable::run, task -> {
+                            if (task.isSuccessful()) {
+                                addLines(task.getResult(), tile, index, width, height, lines);
+                            } else {
+                                Log.w(TAG, "OCR failed on tile " + tile, task.getException());
+                                synchronized (failed) {
+                                    failed[0]++;
+                                }
+                            }
+                            bitmap.recycle();
+                            inFlight.release();
+                        });
+            }
+            // Wait for the last tiles
+            inFlight.acquire(MAX_TILES_IN_FLIGHT);
+        } finally {
+            source.close();
+        }
+
+        List<Line> merged = mergeSeams(new ArrayList<>(lines));
+        Log.d(TAG, width + "x" + height + " in " + tiles.size() + " tiles: " + merged.size() + " lines ("
+                + lines.size() + " before seam merge) in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        synchronized (failed) {
+            return new Result(width, height, tiles.size(), failed[0], merged);
+        }
+    }
+
+    /** Evenly spaced tiles of at most TILE_SIZE, neighbours sharing OVERLAP pixels. */
+    private static List<Rect> planTiles(int width, int height) {
+        int columns = tileCount(width);
+        int rows = tileCount(height);
+        List<Rect> tiles = new ArrayList<>(columns * rows);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                tiles.add(new Rect(
+                        tileStart(column, columns, width),
+                        tileStart(row, rows, height),
+                        Math.min(width, tileStart(column + 1, columns, width) + OVERLAP),
+                        Math.min(height, tileStart(row + 1, rows, height) + OVERLAP)));
+            }
+        }
+        return tiles;
+    }
+
+    private static int tileCount(int length) {
+        return Math.max(1, (int) Math.ceil((length - OVERLAP) / (double) (TILE_SIZE - OVERLAP)));
+    }
+
+    private static int tileStart(int index, int count, int length) {
+        return (int) ((long) index * (length - OVERLAP) / count);
+    }
+
+    /** Maps an upright region back to stored pixels, for an image needing {@code rotation} clockwise. */
+    private static Rect toStored(Rect upright, int rotation, int rawWidth, int rawHeight) {
+        switch (rotation) {
+            case 90:
+                return new Rect(upright.top, rawHeight - upright.right, upright.bottom, rawHeight - upright.left);
+            case 180:
+                return new Rect(rawWidth - upright.right, rawHeight - upright.bottom,
+                        rawWidth - upright.left, rawHeight - upright.top);
+            case 270:
+                return new Rect(rawWidth - upright.bottom, upright.left, rawWidth - upright.top, upright.right);
+            default:
+                return new Rect(upright);
+        }
+    }
+
+    /**
+     * Adds a tile's lines in image coordinates. Lines touching a horizontal cut edge are
+     * dropped, since the neighbouring tile has them whole, unless they are too tall for that.
+     */
+    private static void addLines(Text text, Rect tile, int index, int width, int height, List<Line> out) {
+        boolean cutTop = tile.top > 0;
+        boolean cutBottom = tile.bottom < height;
+        for (Text.TextBlock block : text.getTextBlocks()) {
+            for (Text.Line line : block.getLines()) {
+                String lineText = line.getText();
+                Rect box = line.getBoundingBox();
+                if (lineText == null || lineText.trim().isEmpty() || box == null) continue;
+
+                box = new Rect(box);
+                box.offset(tile.left, tile.top);
+                boolean cut = (cutTop && box.top <= tile.top + EDGE_PX)
+                        || (cutBottom && box.bottom >= tile.bottom - EDGE_PX);
+                if (cut && box.height() < OVERLAP - 2 * EDGE_PX) continue;
+
+                box.set(Math.max(0, box.left), Math.max(0, box.top),
+                        Math.min(width, box.right), Math.min(height, box.bottom));
+                out.add(new Line(lineText.trim(), box, index));
+            }
+        }
+    }
+
+    // ===== Seam merging =====
+
+    /**
+     * Removes lines read twice in an overlap and joins the halves of lines cut by a
+     * vertical seam. Only lines from different tiles on the same row are compared.
+     */
+    private static List<Line> mergeSeams(List<Line> lines) {
+        Collections.sort(lines, (a, b) -> Integer.compare(a.box.left, b.box.left));
+        List<Line> kept = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            boolean merged = false;
+            for (int i = 0; i < kept.size() && !merged; i++) {
+                Line other = kept.get(i);
+                if (other.tile == line.tile || !sameRow(other.box, line.box)) continue;
+
+                int overlapWidth = Math.min(other.box.right, line.box.right) - Math.max(other.box.left, line.box.left);
+                if (overlapWidth <= 0) continue;
+
+                if (readTwice(other.box, line.box)) {
+                    // The same line read twice: keep the more complete reading
+                    if (area(line.box) > area(other.box)) kept.set(i, line);
+                } else {
+                    // other starts further left, since lines arrive sorted by left
+                    Rect box = new Rect(other.box);
+                    box.union(line.box);
+                    kept.set(i, new Line(stitch(other, line, overlapWidth), box, line.tile));
+                }
+                merged = true;
+            }
+            if (!merged) kept.add(line);
+        }
+
+        Collections.sort(kept, (a, b) -> a.box.top != b.box.top
+                ? Integer.compare(a.box.top, b.box.top) : Integer.compare(a.box.left, b.box.left));
+        return kept;
+    }
+
+    private static boolean sameRow(Rect a, Rect b) {
+        int overlap = Math.min(a.bottom, b.bottom) - Math.max(a.top, b.top);
+        return overlap * 2 >= Math.min(a.height(), b.height());
+    }
+
+    /**
+     * True if one box lies within the other's columns, give or take half a line height,
+     * so neither reading has characters the other lacks.
+     */
+    private static boolean readTwice(Rect a, Rect b) {
+        int slack = Math.min(a.height(), b.height()) / 2;
+        return (a.left - slack <= b.left && b.right <= a.right + slack)
+                || (b.left - slack <= a.left && a.right <= b.right + slack);
+    }
+
+    private static long area(Rect box) {
+        return (long) box.width() * box.height();
+    }
+
+    /**
+     * Joins the left and right halves of a cut line. The text both halves share is kept
+     * once; if OCR read the overlap differently, the right half loses the share of its
+     * characters that lies under the left half.
+     */
+    private static String stitch(Line left, Line right, int overlapWidth) {
+        String a = left.text;
+        String b = right.text;
+        for (int k = Math.min(a.length(), b.length()); k >= MIN_TEXT_OVERLAP; k--) {
+            if (a.regionMatches(a.length() - k, b, 0, k)) return a + b.substring(k);
+        }
+        int covered = Math.round(b.length() * overlapWidth / (float) Math.max(1, right.box.width()));
+        return a + b.substring(Math.min(b.length(), covered));
+    }
+}
@@ -2,29 +2,154 @@ package com.example.autoprivacyshield;
 
 import android.content.Context;
 import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.util.Log;
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
 
+import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
-public class YoloV8Helper {
+/**
+ * YOLOv8 object detector. Frames are letterboxed into a reused {@link InputBuffer}, run
+ * through the interpreter once, and the raw output is decoded and suppressed with
+ * primitive arrays that are kept between calls, so a warmed-up detector allocates
+ * nothing per frame.
+ *
+ * Both export layouts are accepted ([1, 4 + classes, anchors] and its transpose), with
+ * boxes in input pixels or normalised to 0..1.
+ */
+public class YoloV8Helper implements AutoCloseable {
     private static final String TAG = "YoloV8Helper";
+    private static final String MODEL_FILE = "yolov8_select_tf_ops.tflite";
+    // Optional, one label per line; COCO names are used without it
+    private static final String LABELS_FILE = "yolov8_labels.txt";
+
+    private static final float SCORE_THRESHOLD = 0.35f;
+    private static final float IOU_THRESHOLD = 0.45f;
+    // Ultralytics pads with grey 114
+    private static final int LETTERBOX_COLOR = 0xFF727272;
+    // NMS buckets per side; a kept box is filed under every cell it touches
+    private static final int NMS_GRID = 8;
+
+    // Object classes masked as sensitive (ID cards, screens, documents), lower case
+    private static final Set<String> SENSITIVE_LABELS = new HashSet<>(Arrays.asList(
+            "id card", "id_card", "card", "credit card", "passport", "document",
+            "screen", "monitor", "tv", "laptop", "cell phone"));
+
+    private static final String[] COCO_LABELS = {
+            "person", "bicycle", "car", "motorcycle", "airplane", "bus", "train", "truck", "boat",
+            "traffic light", "fire hydrant", "stop sign", "parking meter", "bench", "bird", "cat",
+            "dog", "horse", "sheep", "cow", "elephant", "bear", "zebra", "giraffe", "backpack",
+            "umbrella", "handbag", "tie", "suitcase", "frisbee", "skis", "snowboard", "sports ball",
+            "kite", "baseball bat", "baseball glove", "skateboard", "surfboard", "tennis racket",
+            "bottle", "wine glass", "cup", "fork", "knife", "spoon", "bowl", "banana", "apple",
+            "sandwich", "orange", "broccoli", "carrot", "hot dog", "pizza", "donut", "cake", "chair",
+            "couch", "potted plant", "bed", "dining table", "toilet", "tv", "laptop", "mouse",
+            "remote", "keyboard", "cell phone", "microwave", "oven", "toaster", "sink",
+            "refrigerator", "book", "clock", "vase", "scissors", "teddy bear", "hair drier",
+            "toothbrush"
+    };
+
     private Interpreter interpreter;
+    private final int inputWidth;
+    private final int inputHeight;
+    private final boolean floatInput;
+    // Quantised input value for each 8-bit channel value
+    private final byte[] quantizedChannel = new byte[256];
 
-    public YoloV8Helper(Context context) throws IOException {
-        Interpreter.Options options = new Interpreter.Options();
-        options.setNumThreads(4);
+    private final int channels;
+    private final int anchors;
+    private final boolean channelsFirst;
+    private final String[] labels;
+    private final boolean[] sensitiveClasses;
 
+    // Output and decode scratch, guarded by this
+    private final ByteBuffer outputBuffer;
+    private final FloatBuffer outputView;
+    private final float[] output;
+    private final float[] anchorScores;
+    private final int[] anchorClasses;
+    private float[] boxes = new float[64 * 4];  // left, top, right, bottom in letterbox pixels
+    private float[] scores = new float[64];
+    private int[] classes = new int[64];
+    private int candidateCount;
+    private long[] sortKeys = new long[64];  // score bits, then tie-break index
+    private final int[] cellHeads = new int[NMS_GRID * NMS_GRID];
+    private int[] entryNext = new int[256];
+    private int[] entryCandidate = new int[256];
+    private final InputBuffer defaultInput;
+
+    public YoloV8Helper(Context context) throws IOException {
         try {
-            interpreter = new Interpreter(loadModelFile(context, "yolov8_select_tf_ops.tflite"), options);
-            Log.d(TAG, "YOLO model loaded successfully");
+            MappedByteBuffer model = loadModelFile(context, MODEL_FILE);
+            InterpreterTuner.Config config = InterpreterTuner.tune(context, MODEL_FILE, model);
+            interpreter = new Interpreter(model, config.toOptions());
+            Log.d(TAG, "YOLO model loaded successfully (" + config + ")");
         } catch (IOException e) {
             Log.e(TAG, "Failed to load YOLO model: " + e.getMessage());
             throw e;
         }
+
+        Tensor input = interpreter.getInputTensor(0);
+        Tensor out = interpreter.getOutputTensor(0);
+        int[] inputShape = input.shape();   // [1, height, width, 3]
+        int[] outputShape = out.shape();    // [1, 4 + classes, anchors] or [1, anchors, 4 + classes]
+        if (inputShape.length != 4 || inputShape[3] != 3 || outputShape.length != 3
+                || out.dataType() != DataType.FLOAT32) {
+            interpreter.close();
+            throw new IOException("Unsupported YOLO model: input " + Arrays.toString(inputShape)
+                    + ", output " + Arrays.toString(outputShape) + " " + out.dataType());
+        }
+        inputHeight = inputShape[1];
+        inputWidth = inputShape[2];
+        floatInput = input.dataType() == DataType.FLOAT32;
+        if (!floatInput) {
+            Tensor.QuantizationParams quantization = input.quantizationParams();
+            float scale = quantization.getScale() > 0 ? quantization.getScale() : 1f / 255f;
+            for (int v = 0; v < 256; v++) {
+                int q = Math.round(v / 255f / scale) + quantization.getZeroPoint();
+                quantizedChannel[v] = (byte) Math.max(input.dataType() == DataType.INT8 ? -128 : 0,
+                        Math.min(input.dataType() == DataType.INT8 ? 127 : 255, q));
+            }
+        }
+
+        // Anchors always outnumber channels
+        channelsFirst = outputShape[1] < outputShape[2];
+        channels = channelsFirst ? outputShape[1] : outputShape[2];
+        anchors = channelsFirst ? outputShape[2] : outputShape[1];
+        labels = loadLabels(context, channels - 4);
+        sensitiveClasses = new boolean[labels.length];
+        for (int c = 0; c < labels.length; c++) {
+            sensitiveClasses[c] = SENSITIVE_LABELS.contains(labels[c].toLowerCase(Locale.US));
+        }
+
+        outputBuffer = ByteBuffer.allocateDirect(channels * anchors * 4).order(ByteOrder.nativeOrder());
+        outputView = outputBuffer.asFloatBuffer();
+        output = new float[channels * anchors];
+        anchorScores = new float[anchors];
+        anchorClasses = new int[anchors];
+        defaultInput = newInputBuffer();
+        Log.d(TAG, "YOLO input " + inputWidth + "x" + inputHeight + ", " + labels.length + " classes, "
+                + anchors + " anchors");
     }
 
     private MappedByteBuffer loadModelFile(Context context, String modelPath) throws IOException {
@@ -44,15 +169,313 @@ public class YoloV8Helper {
         }
     }
 
+    private static String[] loadLabels(Context context, int classCount) {
+        List<String> loaded = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(context.getAssets().open(LABELS_FILE), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) loaded.add(line.trim());
+            }
+        } catch (IOException e) {
+            loaded.addAll(Arrays.asList(COCO_LABELS));
+        }
+
+        String[] labels = new String[classCount];
+        for (int c = 0; c < classCount; c++) {
+            labels[c] = c < loaded.size() ? loaded.get(c) : "class " + c;
+        }
+        return labels;
+    }
+
     public Interpreter getInterpreter() {
         return interpreter;
     }
 
-    public void close() {
+    // ===== Detection =====
+
+    /** A caller-owned letterboxed input, so a frame can be prepared while another one runs. */
+    public InputBuffer newInputBuffer() {
+        return new InputBuffer(inputWidth, inputHeight, floatInput);
+    }
+
+    /**
+     * Letterboxes {@code bitmap} into {@code input}. Only touches {@code input}, so it can
+     * run on the thread that owns the bitmap while the interpreter is busy elsewhere.
+     */
+    public void prepare(InputBuffer input, Bitmap bitmap) {
+        int sourceWidth = bitmap.getWidth();
+        int sourceHeight = bitmap.getHeight();
+        float scale = Math.min(inputWidth / (float) sourceWidth, inputHeight / (float) sourceHeight);
+        int width = Math.round(sourceWidth * scale);
+        int height = Math.round(sourceHeight * scale);
+        input.scale = scale;
+        input.padX = (inputWidth - width) / 2;
+        input.padY = (inputHeight - height) / 2;
+        input.sourceWidth = sourceWidth;
+        input.sourceHeight = sourceHeight;
+
+        input.letterbox.eraseColor(LETTERBOX_COLOR);
+        input.sourceRect.set(0, 0, sourceWidth, sourceHeight);
+        input.targetRect.set(input.padX, input.padY, input.padX + width, input.padY + height);
+        input.canvas.drawBitmap(bitmap, input.sourceRect, input.targetRect, input.paint);
+        input.letterbox.getPixels(input.pixels, 0, inputWidth, 0, 0, inputWidth, inputHeight);
+
+        int[] pixels = input.pixels;
+        if (floatInput) {
+            FloatBuffer floats = input.floats;
+            for (int i = 0, j = 0; i < pixels.length; i++, j += 3) {
+                int p = pixels[i];
+                floats.put(j, ((p >> 16) & 0xFF) / 255f);
+                floats.put(j + 1, ((p >> 8) & 0xFF) / 255f);
+                floats.put(j + 2, (p & 0xFF) / 255f);
+            }
+        } else {
+            ByteBuffer data = input.data;
+            for (int i = 0, j = 0; i < pixels.length; i++, j += 3) {
+                int p = pixels[i];
+                data.put(j, quantizedChannel[(p >> 16) & 0xFF]);
+                data.put(j + 1, quantizedChannel[(p >> 8) & 0xFF]);
+                data.put(j + 2, quantizedChannel[p & 0xFF]);
+            }
+        }
+    }
+
+    /**
+     * Runs a prepared input and appends the detections to {@code out}, in source bitmap
+     * pixels. Objects get {@link DetectionBuffer#TYPE_OBJECT} with their label as text.
+     *
+     * @return number of detections added
+     */
+    public synchronized int detect(InputBuffer input, DetectionBuffer out) {
+        if (interpreter == null) return 0;
+
+        input.data.rewind();
+        outputBuffer.rewind();
+        interpreter.run(input.data, outputBuffer);
+        outputView.rewind();
+        outputView.get(output);
+
+        decode();
+        return suppressAndEmit(input, out);
+    }
+
+    /** Prepares and runs {@code bitmap} in one go, on the detector's own input buffer. */
+    public synchronized int detect(Bitmap bitmap, DetectionBuffer out) {
+        if (interpreter == null) return 0;
+        prepare(defaultInput, bitmap);
+        return detect(defaultInput, out);
+    }
+
+    public List<DetectResult> detect(Bitmap bitmap) {
+        DetectionBuffer results = new DetectionBuffer();
+        detect(bitmap, results);
+        return results.toDetectResults();
+    }
+
+    // ===== Decoding =====
+
+    // Best class per anchor, then one candidate per anchor above the threshold
+    private void decode() {
+        int classCount = channels - 4;
+        if (channelsFirst) {
+            // Class-major walk keeps reads sequential
+            Arrays.fill(anchorScores, SCORE_THRESHOLD);
+            Arrays.fill(anchorClasses, -1);
+            for (int c = 0; c < classCount; c++) {
+                int row = (4 + c) * anchors;
+                for (int a = 0; a < anchors; a++) {
+                    float score = output[row + a];
+                    if (score > anchorScores[a]) {
+                        anchorScores[a] = score;
+                        anchorClasses[a] = c;
+                    }
+                }
+            }
+        } else {
+            for (int a = 0; a < anchors; a++) {
+                int row = a * channels + 4;
+                float best = SCORE_THRESHOLD;
+                int bestClass = -1;
+                for (int c = 0; c < classCount; c++) {
+                    if (output[row + c] > best) {
+                        best = output[row + c];
+                        bestClass = c;
+                    }
+                }
+                anchorScores[a] = best;
+                anchorClasses[a] = bestClass;
+            }
+        }
+
+        candidateCount = 0;
+        float maxCoordinate = 0f;
+        for (int a = 0; a < anchors; a++) {
+            if (anchorClasses[a] < 0) continue;
+            float cx = value(0, a);
+            float cy = value(1, a);
+            float halfW = value(2, a) / 2f;
+            float halfH = value(3, a) / 2f;
+            addCandidate(cx - halfW, cy - halfH, cx + halfW, cy + halfH, anchorScores[a], anchorClasses[a]);
+            maxCoordinate = Math.max(maxCoordinate, Math.max(cx + halfW, cy + halfH));
+        }
+
+        // Normalised exports keep every coordinate near 0..1
+        if (maxCoordinate <= 2f) {
+            for (int i = 0; i < candidateCount * 4; i += 4) {
+                boxes[i] *= inputWidth;
+                boxes[i + 1] *= inputHeight;
+                boxes[i + 2] *= inputWidth;
+                boxes[i + 3] *= inputHeight;
+            }
+        }
+    }
+
+    private float value(int channel, int anchor) {
+        return channelsFirst ? output[channel * anchors + anchor] : output[anchor * channels + channel];
+    }
+
+    private void addCandidate(float left, float top, float right, float bottom, float score, int cls) {
+        if (candidateCount == scores.length) {
+            int capacity = candidateCount * 2;
+            boxes = Arrays.copyOf(boxes, capacity * 4);
+            scores = Arrays.copyOf(scores, capacity);
+            classes = Arrays.copyOf(classes, capacity);
+        }
+        int i = candidateCount++;
+        boxes[i * 4] = left;
+        boxes[i * 4 + 1] = top;
+        boxes[i * 4 + 2] = right;
+        boxes[i * 4 + 3] = bottom;
+        scores[i] = score;
+        classes[i] = cls;
+    }
+
+    // ===== Grid-bucketed NMS =====
+
+    /**
+     * Class-aware greedy NMS: candidates are visited from the highest score down (ties go
+     * to the lower index) and kept unless they overlap a box already kept for their class.
+     * Kept boxes are filed under every grid cell they touch; overlapping boxes always share
+     * a cell, so a candidate is only compared with the kept boxes in its own cells.
+     */
+    private int suppressAndEmit(InputBuffer input, DetectionBuffer out) {
+        if (sortKeys.length < candidateCount) sortKeys = new long[scores.length];
+        for (int i = 0; i < candidateCount; i++) {
+            // Scores are positive, so their bits order like the floats; the low half breaks ties
+            sortKeys[i] = (long) Float.floatToIntBits(scores[i]) << 32 | (Integer.MAX_VALUE - i);
+        }
+        Arrays.sort(sortKeys, 0, candidateCount);
+
+        Arrays.fill(cellHeads, -1);
+        int entries = 0;
+        int added = 0;
+        for (int k = candidateCount - 1; k >= 0; k--) {
+            int i = Integer.MAX_VALUE - (int) sortKeys[k];
+            int x0 = cell(boxes[i * 4], inputWidth);
+            int y0 = cell(boxes[i * 4 + 1], inputHeight);
+            int x1 = cell(boxes[i * 4 + 2], inputWidth);
+            int y1 = cell(boxes[i * 4 + 3], inputHeight);
+            if (overlapsKept(i, x0, y0, x1, y1)) continue;
+
+            emit(i, input, out);
+            added++;
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    if (entries == entryNext.length) {
+                        entryNext = Arrays.copyOf(entryNext, entries * 2);
+                        entryCandidate = Arrays.copyOf(entryCandidate, entries * 2);
+                    }
+                    int cellIndex = y * NMS_GRID + x;
+                    entryCandidate[entries] = i;
+                    entryNext[entries] = cellHeads[cellIndex];
+                    cellHeads[cellIndex] = entries++;
+                }
+            }
+        }
+        return added;
+    }
+
+    private boolean overlapsKept(int i, int x0, int y0, int x1, int y1) {
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                for (int e = cellHeads[y * NMS_GRID + x]; e >= 0; e = entryNext[e]) {
+                    int j = entryCandidate[e];
+                    if (classes[j] == classes[i] && iou(i, j) > IOU_THRESHOLD) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private float iou(int i, int j) {
+        float left = Math.max(boxes[i * 4], boxes[j * 4]);
+        float top = Math.max(boxes[i * 4 + 1], boxes[j * 4 + 1]);
+        float right = Math.min(boxes[i * 4 + 2], boxes[j * 4 + 2]);
+        float bottom = Math.min(boxes[i * 4 + 3], boxes[j * 4 + 3]);
+        if (right <= left || bottom <= top) return 0f;
+        float intersection = (right - left) * (bottom - top);
+        float areaI = (boxes[i * 4 + 2] - boxes[i * 4]) * (boxes[i * 4 + 3] - boxes[i * 4 + 1]);
+        float areaJ = (boxes[j * 4 + 2] - boxes[j * 4]) * (boxes[j * 4 + 3] - boxes[j * 4 + 1]);
+        return intersection / (areaI + areaJ - intersection);
+    }
+
+    private static int cell(float coordinate, int size) {
+        int cell = (int) (coordinate * NMS_GRID / size);
+        return cell < 0 ? 0 : Math.min(NMS_GRID - 1, cell);
+    }
+
+    // Letterbox pixels back to source pixels, clipped to the bitmap
+    private void emit(int i, InputBuffer input, DetectionBuffer out) {
+        int left = toSource(boxes[i * 4], input.padX, input.scale, input.sourceWidth);
+        int top = toSource(boxes[i * 4 + 1], input.padY, input.scale, input.sourceHeight);
+        int right = toSource(boxes[i * 4 + 2], input.padX, input.scale, input.sourceWidth);
+        int bottom = toSource(boxes[i * 4 + 3], input.padY, input.scale, input.sourceHeight);
+        if (right <= left || bottom <= top) return;
+        int cls = classes[i];
+        out.add(left, top, right, bottom, DetectionBuffer.TYPE_OBJECT,
+                sensitiveClasses[cls] ? DetectionBuffer.FLAG_SENSITIVE : 0, labels[cls]);
+    }
+
+    private static int toSource(float coordinate, int pad, float scale, int size) {
+        int value = Math.round((coordinate - pad) / scale);
+        return value < 0 ? 0 : Math.min(size, value);
+    }
+
+    @Override
+    public synchronized void close() {
         if (interpreter != null) {
             interpreter.close();
             interpreter = null;
             Log.d(TAG, "YOLO interpreter closed");
         }
     }
+
+    /** Letterbox canvas, pixel scratch and model input for one frame at a time. */
+    public static final class InputBuffer {
+        final Bitmap letterbox;
+        final Canvas canvas;
+        final Paint paint = new Paint();
+        final Rect sourceRect = new Rect();
+        final Rect targetRect = new Rect();
+        final int[] pixels;
+        final ByteBuffer data;
+        final FloatBuffer floats;  // View of data for float models
+
+        float scale;
+        int padX;
+        int padY;
+        int sourceWidth;
+        int sourceHeight;
+
+        InputBuffer(int width, int height, boolean floatInput) {
+            letterbox = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            canvas = new Canvas(letterbox);
+            paint.setFilterBitmap(true);
+            pixels = new int[width * height];
+            data = ByteBuffer.allocateDirect(width * height * 3 * (floatInput ? 4 : 1))
+                    .order(ByteOrder.nativeOrder());
+            floats = floatInput ? data.asFloatBuffer() : null;
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package com.example.autoprivacyshield;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.PowerManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CadenceGovernorTest {
+    private long now;
+    private long latencyMs;
+    private int queueDepth;
+    private CadenceGovernor governor;
+
+    @Before
+    public void setUp() {
+        now = 10_000;
+        CadenceGovernor.LatencySource source = new CadenceGovernor.LatencySource() {
+            @Override
+            public long getLastLatencyMs() {
+                return latencyMs;
+            }
+
+            @Override
+            public int getQueueDepth() {
+                return queueDepth;
+            }
+        };
+        governor = new CadenceGovernor(source, () -> now);
+    }
+
+    @Test
+    public void idlePipelineRunsAtMinimumInterval() {
+        assertTrue(governor.shouldProcess(true));
+        now += CadenceGovernor.MIN_INTERVAL_MS - 1;
+        assertFalse(governor.shouldProcess(true));
+        now += 1;
+        assertTrue(governor.shouldProcess(true));
+    }
+
+    @Test
+    public void throttledFrameIsDueWhenIntervalElapses() {
+        latencyMs = 200;
+        queueDepth = 1;
+        assertTrue(governor.shouldProcess(true));
+
+        now += 50;
+        assertFalse(governor.shouldProcess(true));
+        long wait = governor.timeUntilNextChangeMs();
+        assertEquals(150, wait);
+
+        // The deferred re-check lands exactly when the governor lets the frame through
+        now += wait;
+        assertEquals(0, governor.timeUntilNextChangeMs());
+        assertTrue(governor.shouldProcess(true));
+    }
+
+    @Test
+    public void latencyIsSmoothed() {
+        latencyMs = 100;
+        queueDepth = 1;
+        assertTrue(governor.shouldProcess(true));
+        assertEquals(100, governor.currentIntervalMs());
+
+        latencyMs = 500;
+        now += 100;
+        assertTrue(governor.shouldProcess(true));
+        assertEquals(200, governor.currentIntervalMs());
+    }
+
+    @Test
+    public void unchangedFramesOnlyAtHeartbeat() {
+        assertTrue(governor.shouldProcess(true));
+        now += CadenceGovernor.HEARTBEAT_MS - 1;
+        assertFalse(governor.shouldProcess(false));
+        now += 1;
+        assertTrue(governor.shouldProcess(false));
+    }
+
+    @Test
+    public void thermalThrottlingStretchesIntervals() {
+        latencyMs = 100;
+        queueDepth = 1;
+        assertTrue(governor.shouldProcess(true));
+
+        governor.setThermalStatus(PowerManager.THERMAL_STATUS_MODERATE);
+        assertEquals(200, governor.currentIntervalMs());
+        governor.setThermalStatus(PowerManager.THERMAL_STATUS_SEVERE);
+        assertEquals(400, governor.currentIntervalMs());
+
+        latencyMs = 10_000;
+        now += 400;
+        assertTrue(governor.shouldProcess(true));
+        assertEquals(CadenceGovernor.MAX_INTERVAL_MS, governor.currentIntervalMs());
+    }
+}
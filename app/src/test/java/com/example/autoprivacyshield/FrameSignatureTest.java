@@ -0,0 +1,74 @@
+package com.example.autoprivacyshield;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class FrameSignatureTest {
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 130;
+
+    @Test
+    public void everySinglePixelChangeIsSeen() {
+        int[][] frame = randomFrame(new Random(7));
+        FrameSignature original = sign(frame);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int saved = frame[y][x];
+                frame[y][x] ^= 1;  // the smallest possible change
+                FrameSignature changed = sign(frame);
+                frame[y][x] = saved;
+
+                assertFalse("pixel " + x + "," + y, changed.sameAs(original));
+                int column = x / FrameSignature.TILE_SIZE;
+                int row = y / FrameSignature.TILE_SIZE;
+                assertTrue(changed.isTileChanged(original, column, row));
+                // Only the pixel's own tile changes
+                if (column > 0) assertFalse(changed.isTileChanged(original, column - 1, row));
+                if (row > 0) assertFalse(changed.isTileChanged(original, column, row - 1));
+            }
+        }
+    }
+
+    @Test
+    public void identicalFramesMatch() {
+        int[][] frame = randomFrame(new Random(11));
+        assertTrue(sign(frame).sameAs(sign(frame)));
+    }
+
+    @Test
+    public void areaChangeCoversOverlappingTilesOnly() {
+        int[][] frame = randomFrame(new Random(19));
+        FrameSignature original = new FrameSignature();
+        original.copyFrom(sign(frame));
+        frame[70][100] ^= 1;  // tile (1, 1)
+        FrameSignature changed = sign(frame);
+
+        int tile = FrameSignature.TILE_SIZE;
+        assertTrue(changed.isAreaChanged(original, 100, 70, 101, 71));
+        assertTrue(changed.isAreaChanged(original, 0, 0, tile + 1, tile + 1));
+        assertFalse(changed.isAreaChanged(original, 0, 0, tile, tile));
+        assertFalse(changed.isAreaChanged(original, 2 * tile, 0, WIDTH, HEIGHT));
+    }
+
+    private static FrameSignature sign(int[][] frame) {
+        FrameSignature signature = new FrameSignature();
+        signature.begin(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            signature.addRow(y, frame[y]);
+        }
+        return signature;
+    }
+
+    private static int[][] randomFrame(Random random) {
+        int[][] frame = new int[HEIGHT][WIDTH];
+        for (int[] row : frame) {
+            for (int x = 0; x < WIDTH; x++) row[x] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.autoprivacyshield;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/** Compares the parallel kernels with straightforward per-pixel versions. */
+public class MaskKernelsTest {
+
+    @Test
+    public void blurMatchesNaiveReference() {
+        Random random = new Random(3);
+        // Small regions run inline; the large one is split across the fork-join pool
+        int[][] sizes = {{1, 1}, {5, 3}, {17, 40}, {300, 200}};
+        for (int[] size : sizes) {
+            for (int radius : new int[]{1, 4, 25}) {
+                int width = size[0];
+                int height = size[1];
+                int[] pixels = randomPixels(random, width * height);
+                int[] expected = naiveBlur(pixels, width, height, radius, 3);
+
+                MaskKernels.boxBlur(pixels, new int[width * height], width, height, radius, 3);
+                assertArrayEquals(width + "x" + height + " r" + radius, expected, pixels);
+            }
+        }
+    }
+
+    @Test
+    public void pixelateMatchesNaiveReference() {
+        Random random = new Random(5);
+        int[][] sizes = {{1, 1}, {13, 7}, {300, 200}};
+        for (int[] size : sizes) {
+            for (int block : new int[]{1, 4, 12}) {
+                int width = size[0];
+                int height = size[1];
+                int[] pixels = randomPixels(random, width * height);
+                int[] expected = naivePixelate(pixels, width, height, block);
+
+                MaskKernels.pixelate(pixels, width, height, block);
+                assertArrayEquals(width + "x" + height + " b" + block, expected, pixels);
+            }
+        }
+    }
+
+    // ===== Reference kernels =====
+
+    private static int[] naiveBlur(int[] source, int width, int height, int radius, int passes) {
+        int[] pixels = source.clone();
+        for (int pass = 0; pass < passes; pass++) {
+            int[] horizontal = new int[pixels.length];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    long[] sum = new long[4];
+                    for (int i = -radius; i <= radius; i++) {
+                        add(sum, pixels[y * width + clamp(x + i, width)]);
+                    }
+                    horizontal[y * width + x] = average(sum, 2 * radius + 1);
+                }
+            }
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    long[] sum = new long[4];
+                    for (int i = -radius; i <= radius; i++) {
+                        add(sum, horizontal[clamp(y + i, height) * width + x]);
+                    }
+                    pixels[y * width + x] = average(sum, 2 * radius + 1);
+                }
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] naivePixelate(int[] source, int width, int height, int block) {
+        int[] pixels = new int[source.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int left = x / block * block;
+                int top = y / block * block;
+                int right = Math.min(width, left + block);
+                int bottom = Math.min(height, top + block);
+                long[] sum = new long[4];
+                for (int cy = top; cy < bottom; cy++) {
+                    for (int cx = left; cx < right; cx++) add(sum, source[cy * width + cx]);
+                }
+                pixels[y * width + x] = average(sum, (right - left) * (bottom - top));
+            }
+        }
+        return pixels;
+    }
+
+    private static void add(long[] sum, int pixel) {
+        sum[0] += pixel >>> 24;
+        sum[1] += (pixel >> 16) & 0xFF;
+        sum[2] += (pixel >> 8) & 0xFF;
+        sum[3] += pixel & 0xFF;
+    }
+
+    private static int average(long[] sum, int count) {
+        return (int) (sum[0] / count) << 24 | (int) (sum[1] / count) << 16
+                | (int) (sum[2] / count) << 8 | (int) (sum[3] / count);
+    }
+
+    private static int clamp(int index, int length) {
+        return Math.max(0, Math.min(length - 1, index));
+    }
+
+    private static int[] randomPixels(Random random, int count) {
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) pixels[i] = random.nextInt();
+        return pixels;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.autoprivacyshield;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/** Checks coalesced boxes against a pixel grid painted from the input boxes. */
+public class RectCoalescerTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @Test
+    public void coversExactlyTheUnionWithDisjointBoxes() {
+        Random random = new Random(13);
+        for (int round = 0; round < 5_000; round++) {
+            int count = random.nextInt(12);
+            int[] boxes = new int[count * 4];
+            for (int i = 0; i < count; i++) {
+                // Small coordinates so edges often line up, nest and touch
+                int left = random.nextInt(WIDTH - 1);
+                int top = random.nextInt(HEIGHT - 1);
+                boxes[4 * i] = left;
+                boxes[4 * i + 1] = top;
+                boxes[4 * i + 2] = left + 1 + random.nextInt(Math.min(20, WIDTH - left));
+                boxes[4 * i + 3] = top + 1 + random.nextInt(Math.min(20, HEIGHT - top));
+            }
+
+            int[] result = RectCoalescer.coalesce(boxes, count);
+            assertEquals(0, result.length % 4);
+            assertArrayEquals("round " + round, paint(boxes, count, false), paint(result, result.length / 4, true));
+        }
+    }
+
+    @Test
+    public void nestedAndStackedBoxesMerge() {
+        // A box inside another vanishes into it
+        assertArrayEquals(new int[]{0, 0, 10, 10}, RectCoalescer.coalesce(new int[]{0, 0, 10, 10, 2, 2, 5, 5}, 2));
+        // Boxes with the same span stacked on top of each other become one
+        assertArrayEquals(new int[]{3, 0, 8, 9}, RectCoalescer.coalesce(new int[]{3, 0, 8, 4, 3, 4, 8, 9}, 2));
+    }
+
+    @Test
+    public void emptyAndSingleInputsAreCopied() {
+        assertEquals(0, RectCoalescer.coalesce(new int[8], 0).length);
+        int[] single = {1, 2, 3, 4};
+        int[] result = RectCoalescer.coalesce(single, 1);
+        assertArrayEquals(single, result);
+        assertTrue(result != single);
+    }
+
+    // Coverage count per pixel; disjoint boxes must never cover a pixel twice
+    private static int[] paint(int[] boxes, int count, boolean disjoint) {
+        int[] grid = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < count; i++) {
+            assertTrue(boxes[4 * i] < boxes[4 * i + 2] && boxes[4 * i + 1] < boxes[4 * i + 3]);
+            for (int y = boxes[4 * i + 1]; y < boxes[4 * i + 3]; y++) {
+                for (int x = boxes[4 * i]; x < boxes[4 * i + 2]; x++) {
+                    if (disjoint) assertEquals("overlap at " + x + "," + y, 0, grid[y * WIDTH + x]);
+                    grid[y * WIDTH + x] = 1;
+                }
+            }
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.autoprivacyshield;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the single-pass scanner against the regexes it replaced: for every family the
+ * scanner must report exactly the spans that repeated {@link Matcher#find()} reports.
+ */
+public class SensitiveTextScannerTest {
+
+    // The patterns as they were before the scanner
+    private static final Pattern EMAIL = Pattern.compile("[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}");
+    private static final Pattern CARD = Pattern.compile("\\b\\d{4}([- ]?\\d{4}){3}\\b");
+    private static final Pattern AADHAAR = Pattern.compile("\\b\\d{4}\\s?\\d{4}\\s?\\d{4}\\b");
+    private static final Pattern PAN = Pattern.compile("[A-Z]{5}[0-9]{4}[A-Z]");
+    private static final Pattern PHONE = Pattern.compile("(?:\\+91[-\\s]?)?[6-9]\\d{9}");
+    private static final Pattern OTP = Pattern.compile("\\b\\d{4,8}\\b");
+    private static final Pattern DIGITS_12 = Pattern.compile("\\b\\d{12}\\b");
+    private static final Pattern DIGITS_10 = Pattern.compile("\\b\\d{10}\\b");
+    private static final Pattern DIGITS_4 = Pattern.compile("\\b\\d{4}\\b");
+    private static final Pattern PAN_WORD = Pattern.compile("\\b[A-Z]{5}[0-9]{4}[A-Z]\\b");
+    private static final Pattern DATE = Pattern.compile("\\b\\d{2}/\\d{2}/\\d{4}\\b|\\b\\d{4}-\\d{2}-\\d{2}\\b");
+
+    private static final String[] CORPUS = {
+            "",
+            "nothing to see here",
+            "Your OTP is 482913. Do not share it.",
+            "otp OTP Otp oTp",
+            "Enter PIN 1234 to continue",
+            "Password: hunter2, PASSWORD reset",
+            "pinned message",
+            // Digit runs at word boundaries
+            "1234", "123", "123456789", "a1234", "1234a", "_1234", "1234_", "12345678 123456789",
+            "code:5678;", "(9876)", "1234-5678", "12.3456.78",
+            "987654321098", "9876543210987", "x987654321098", "987654321098x",
+            // Phones, with and without +91
+            "Call 9876543210 now", "Call +919876543210", "Call +91 9876543210", "Call +91-9876543210",
+            "+91  9876543210", "+91\t8765432109", "+9198765", "++919876543210", "+915876543210",
+            "5876543210", "98765432109876543210", "019876543210", "+91 98765 43210",
+            // Cards and Aadhaar
+            "4111 1111 1111 1111", "4111-1111-1111-1111", "4111111111111111", "4111 1111-1111 1111",
+            "4111  1111 1111 1111", "41111 1111 1111 1111", "4111 1111 1111 11112",
+            "1234 5678 9012", "1234\t5678\n9012", "123456789012", "1234 56789012", "1234  5678 9012",
+            // PAN
+            "ABCDE1234F", "xABCDE1234F", "ABCDEF1234G", "ABCDE1234FG", "abcde1234f", "PAN: ABCDE1234F.",
+            "AABCDE1234F1", "ABCDE12345F",
+            // Emails
+            "mail me at john.doe@example.com", "a@b.co", "a@b.c", "@example.com", "john@", "x@y",
+            "first+tag@sub.domain.org.", "j_d%x-y@ex-ample.co.uk", "weird@@example.com",
+            "a@b..com", "a@.com", "a.b@c.d.ef", "me@host.c0m", "me@host.com1", "x@1.2.ab",
+            "two a@b.com and c@d.org", "a@b.com@c.org",
+            // Dates
+            "DOB 01/02/1990", "1990-02-01", "01/02/19901", "1/02/1990", "01-02-1990", "2024-1-01",
+            "x01/02/1990", "01/02/1990x", "1990-02-011",
+            // Mixed
+            "OTP 4821 for card 4111 1111 1111 1111 sent to 9876543210 / a@b.com, PAN ABCDE1234F",
+            "Ref 1234 5678 9012 3456 7890",
+            "\u0669\u0661\u0662\u0663 four Arabic-Indic digits",
+    };
+
+    private static final char[] ALPHABET = "0123456789 +-@._/%\tABCDEFPabcotpinwrdsx9196".toCharArray();
+
+    @Test
+    public void matchesRegexesOnCorpus() {
+        for (String text : CORPUS) {
+            assertSameSpans(text);
+        }
+    }
+
+    @Test
+    public void matchesRegexesOnRandomText() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20_000; round++) {
+            char[] text = new char[random.nextInt(40)];
+            for (int i = 0; i < text.length; i++) {
+                // Long digit runs are where the families disagree with each other
+                text[i] = random.nextInt(3) == 0
+                        ? (char) ('0' + random.nextInt(10))
+                        : ALPHABET[random.nextInt(ALPHABET.length)];
+            }
+            assertSameSpans(new String(text));
+        }
+    }
+
+    @Test
+    public void containsAnyStopsAtFirstFamily() {
+        assertTrue(SensitiveTextScanner.containsAny("otp", SensitiveTextScanner.ALL));
+        assertTrue(SensitiveTextScanner.containsAny("call +91 9876543210", SensitiveTextScanner.PHONE));
+        assertFalse(SensitiveTextScanner.containsAny("call 12345", SensitiveTextScanner.PHONE));
+        assertFalse(SensitiveTextScanner.containsAny(null, SensitiveTextScanner.ALL));
+    }
+
+    private static void assertSameSpans(String text) {
+        assertFamily(text, SensitiveTextScanner.EMAIL, EMAIL);
+        assertFamily(text, SensitiveTextScanner.CARD, CARD);
+        assertFamily(text, SensitiveTextScanner.AADHAAR, AADHAAR);
+        assertFamily(text, SensitiveTextScanner.PAN, PAN);
+        assertFamily(text, SensitiveTextScanner.PHONE, PHONE);
+        assertFamily(text, SensitiveTextScanner.OTP, OTP);
+        assertFamily(text, SensitiveTextScanner.DIGITS_12, DIGITS_12);
+        assertFamily(text, SensitiveTextScanner.DIGITS_10, DIGITS_10);
+        assertFamily(text, SensitiveTextScanner.DIGITS_4, DIGITS_4);
+        assertFamily(text, SensitiveTextScanner.PAN_WORD, PAN_WORD);
+        assertFamily(text, SensitiveTextScanner.DATE, DATE);
+        assertKeyword(text, SensitiveTextScanner.KEYWORD_OTP, "otp");
+        assertKeyword(text, SensitiveTextScanner.KEYWORD_PASSWORD, "password");
+        assertKeyword(text, SensitiveTextScanner.KEYWORD_PIN, "pin");
+    }
+
+    private static void assertFamily(String text, int family, Pattern pattern) {
+        List<String> expected = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            expected.add(matcher.start() + "-" + matcher.end());
+        }
+        assertEquals(describe(text, pattern.pattern()), expected, scannerSpans(text, family));
+    }
+
+    // The keywords were found with toLowerCase().indexOf(): first occurrence only
+    private static void assertKeyword(String text, int family, String word) {
+        int index = text.toLowerCase(Locale.ROOT).indexOf(word);
+        List<String> expected = index < 0
+                ? new ArrayList<>()
+                : new ArrayList<>(Arrays.asList(index + "-" + (index + word.length())));
+        assertEquals(describe(text, word), expected, scannerSpans(text, family));
+    }
+
+    private static List<String> scannerSpans(String text, int family) {
+        List<String> spans = new ArrayList<>();
+        int found = SensitiveTextScanner.scan(text, family, (f, start, end) -> {
+            assertEquals(family, f);
+            spans.add(start + "-" + end);
+        });
+        assertEquals(describe(text, "found bits"), spans.isEmpty() ? 0 : family, found);
+        return spans;
+    }
+
+    private static String describe(String text, String what) {
+        return what + " in \"" + text.replace("\t", "\\t").replace("\n", "\\n") + "\"";
+    }
+}